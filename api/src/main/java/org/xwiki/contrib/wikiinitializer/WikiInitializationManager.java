@@ -19,7 +19,16 @@
  */
 package org.xwiki.contrib.wikiinitializer;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 import org.xwiki.component.annotation.Role;
+import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.stability.Unstable;
 import org.xwiki.wiki.descriptor.WikiDescriptor;
 
@@ -34,10 +43,112 @@ import org.xwiki.wiki.descriptor.WikiDescriptor;
 public interface WikiInitializationManager
 {
     /**
-     * Initialize the wiki corresponding to the given descriptor.
+     * The identifier of the job in charge of initializing the sub-wikis on startup.
+     *
+     * @since 1.2.4
+     */
+    List<String> SUBWIKIS_INITIALIZATION_JOB_ID = Arrays.asList("wikiinitializer", "subwikis");
+
+    /**
+     * Initialize the wiki corresponding to the given descriptor. A wiki is initialized only once: if the wiki is
+     * already being initialized, this method waits for the end of the ongoing initialization, and if it has already
+     * been initialized, this method returns immediately.
      *
      * @param descriptor the descriptor of the wiki to be initialized
      * @throws WikiInitializationException in case an error occurred during the initialization
      */
     void initialize(WikiDescriptor descriptor) throws WikiInitializationException;
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return true if the wiki has been successfully initialized through this manager
+     * @since 1.2.4
+     */
+    default boolean isInitialized(String wikiId)
+    {
+        return getState(wikiId) == WikiInitializationState.INITIALIZED;
+    }
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return the state of the initialization of the wiki through this manager, always
+     *         {@link WikiInitializationState#NOT_INITIALIZED} for implementations that don't keep track of it
+     * @since 1.2.4
+     */
+    default WikiInitializationState getState(String wikiId)
+    {
+        return WikiInitializationState.NOT_INITIALIZED;
+    }
+
+    /**
+     * Forget the initialization of a wiki, so that the next call to {@link #initialize(WikiDescriptor)} initializes
+     * it again. An ongoing initialization is not affected.
+     *
+     * @param wikiId the identifier of the wiki
+     * @return true if the wiki was initialized and has been forgotten
+     * @since 1.2.4
+     */
+    default boolean forget(String wikiId)
+    {
+        return false;
+    }
+
+    /**
+     * Give up an ongoing initialization of a wiki, e.g. because it timed out: the callers waiting for it fail, the
+     * wiki is considered failed and the next call to {@link #initialize(WikiDescriptor)} starts a new initialization
+     * instead of waiting for the abandoned one, which may keep running in the background.
+     *
+     * @param wikiId the identifier of the wiki
+     * @return true if an ongoing initialization has been abandoned
+     * @since 1.2.4
+     */
+    default boolean abandon(String wikiId)
+    {
+        return false;
+    }
+
+    /**
+     * Asynchronously initialize the wikis corresponding to the given descriptors. Each wiki is initialized in its own
+     * execution context, using a context cloned from the one of the calling thread. Canceling a returned future
+     * before the initialization of its wiki starts prevents that initialization. The default implementation
+     * initializes the wikis one after the other in the calling thread, ignoring the concurrency and the timeout.
+     *
+     * @param descriptors the descriptors of the wikis to be initialized
+     * @param concurrency the maximum number of wikis initialized at the same time
+     * @param timeout the maximum time allowed to initialize each wiki, or {@code null} for no limit; when reached,
+     *            the future of the wiki fails with a {@link WikiInitializationException}, the thread initializing
+     *            the wiki is interrupted and the initialization is {@link #abandon(String) abandoned}
+     * @return the futures tracking the initialization of each wiki, indexed by wiki identifier, in the order of the
+     *         given descriptors; a future fails with a {@link WikiInitializationException} when the initialization
+     *         of its wiki fails
+     * @since 1.2.4
+     */
+    default Map<String, CompletableFuture<Void>> initialize(Collection<WikiDescriptor> descriptors, int concurrency,
+        Duration timeout)
+    {
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        for (WikiDescriptor descriptor : descriptors) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            try {
+                initialize(descriptor);
+                future.complete(null);
+            } catch (WikiInitializationException e) {
+                future.completeExceptionally(e);
+            }
+            futures.put(descriptor.getId(), future);
+        }
+
+        return futures;
+    }
+
+    /**
+     * @return the status of the job initializing the sub-wikis on startup (which can be canceled through
+     *         {@link org.xwiki.job.event.status.CancelableJobStatus#cancel()}), or {@code null} if no such job has
+     *         been started
+     * @since 1.2.4
+     */
+    default JobStatus getSubWikisInitializationStatus()
+    {
+        return null;
+    }
 }
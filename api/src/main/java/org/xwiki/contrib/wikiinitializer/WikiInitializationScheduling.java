@@ -0,0 +1,63 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * The strategies that can be used to order the initialization of sub-wikis.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Unstable
+public enum WikiInitializationScheduling
+{
+    /**
+     * Initialize the priority wikis first, then the most accessed wikis, so that the most useful wikis are ready as
+     * soon as possible.
+     */
+    PRIORITY,
+
+    /**
+     * Initialize the priority wikis first, then the wikis that took the longest to initialize during the previous
+     * run, so that the total initialization time is as short as possible when wikis are initialized concurrently.
+     */
+    LONGEST_FIRST;
+
+    /**
+     * @param value the value to parse, case and underscores being ignored (e.g. {@code longestFirst})
+     * @param defaultValue the value to return when the given value doesn't match any strategy
+     * @return the matching strategy
+     */
+    public static WikiInitializationScheduling parse(String value, WikiInitializationScheduling defaultValue)
+    {
+        if (value != null) {
+            String normalizedValue = value.replace("_", "");
+            for (WikiInitializationScheduling scheduling : values()) {
+                if (scheduling.name().replace("_", "").equalsIgnoreCase(normalizedValue)) {
+                    return scheduling;
+                }
+            }
+        }
+
+        return defaultValue;
+    }
+}
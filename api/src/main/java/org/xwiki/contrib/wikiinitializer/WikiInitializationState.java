@@ -0,0 +1,52 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * The state of the initialization of a wiki, as known by the {@link WikiInitializationManager}.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Unstable
+public enum WikiInitializationState
+{
+    /**
+     * The wiki has not been initialized through the manager yet.
+     */
+    NOT_INITIALIZED,
+
+    /**
+     * The wiki is being initialized.
+     */
+    INITIALIZING,
+
+    /**
+     * The wiki has been successfully initialized.
+     */
+    INITIALIZED,
+
+    /**
+     * The last initialization of the wiki failed.
+     */
+    FAILED
+}
@@ -20,6 +20,8 @@
 package org.xwiki.contrib.wikiinitializer;
 
 import java.net.URL;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,7 +33,8 @@ import org.xwiki.stability.Unstable;
 import org.xwiki.wiki.descriptor.WikiDescriptor;
 
 /**
- * Configuration interface for the Wiki Initializer application.
+ * Configuration interface for the Wiki Initializer application. The methods added since 1.2.4 have a default
+ * implementation returning their default value, so that existing implementations keep working.
  *
  * @version $Id$
  * @since 1.0
@@ -90,4 +93,347 @@ public interface WikiInitializerConfiguration
      * {@link #initializeAllSubWikis()} is false
      */
     Set<WikiDescriptor> getInitializableWikis();
+
+    /**
+     * @return the maximum number of sub-wikis that can be initialized concurrently; a value of 1 means that sub-wikis
+     * are initialized one after the other
+     * @since 1.2.4
+     */
+    default int getParallelism()
+    {
+        return 1;
+    }
+
+    /**
+     * @return the maximum time allowed to initialize a single sub-wiki, or {@code null} if there is no limit
+     * @since 1.2.4
+     */
+    default Duration getInitializationTimeout()
+    {
+        return null;
+    }
+
+    /**
+     * @return the number of times the initialization of a sub-wiki is retried after a failure
+     * @since 1.2.4
+     */
+    default int getMaxRetries()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the delay before retrying the initialization of the sub-wikis that failed, doubled after each retry
+     * @since 1.2.4
+     */
+    default Duration getRetryDelay()
+    {
+        return Duration.ofSeconds(1);
+    }
+
+    /**
+     * @return true if the requests made to each wiki should be counted, in order to initialize the most used wikis
+     *         first and to evict the idle ones; disabled by default since it adds some work to every request
+     * @since 1.2.4
+     */
+    default boolean isAccessTrackingEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * @return the identifiers of the sub-wikis to initialize before any other, in the order in which they should be
+     *         initialized
+     * @since 1.2.4
+     */
+    default List<String> getPriorityWikis()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the strategy used to order the initialization of the sub-wikis
+     * @since 1.2.4
+     */
+    default WikiInitializationScheduling getScheduling()
+    {
+        return WikiInitializationScheduling.PRIORITY;
+    }
+
+    /**
+     * @return true if only the sub-wikis returned by {@link #getInitializableWikis()} should be initialized on
+     *         startup, the other sub-wikis being initialized on their first access or by a background prefetch
+     *         running when the server is idle
+     * @since 1.2.4
+     */
+    default boolean isLazyInitialization()
+    {
+        return false;
+    }
+
+    /**
+     * @return true if the caches of each wiki (documents, preferences, skin) should be warmed up once the wiki is
+     *         initialized
+     * @since 1.2.4
+     */
+    default boolean isWarmUpEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * @return the references of the documents to load when warming up a wiki; references without a wiki are
+     *         resolved against each warmed up wiki while the other ones are only loaded when warming up their wiki
+     * @since 1.2.4
+     */
+    default List<String> getWarmUpDocuments()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the references of the spaces whose home page should be loaded when warming up a wiki, resolved the
+     *         same way as {@link #getWarmUpDocuments()}
+     * @since 1.2.4
+     */
+    default List<String> getWarmUpSpaces()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the maximum number of wikis that can be warmed up at the same time
+     * @since 1.2.4
+     */
+    default int getWarmUpConcurrency()
+    {
+        return 1;
+    }
+
+    /**
+     * @return the URLs of the requests to replay once the wikis are initialized, in order to warm up the templates,
+     *         the rendering caches and the JIT compiler; relative URLs are resolved against
+     *         {@link #getInitialRequestURL()}
+     * @since 1.2.4
+     */
+    default List<String> getReplayURLs()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the path of an access log (in the common or combined log format) whose most requested URLs should be
+     *         replayed in addition to {@link #getReplayURLs()}, or {@code null} if none
+     * @since 1.2.4
+     */
+    default String getReplayAccessLog()
+    {
+        return null;
+    }
+
+    /**
+     * @return the number of most requested URLs to replay from {@link #getReplayAccessLog()}
+     * @since 1.2.4
+     */
+    default int getReplayAccessLogSize()
+    {
+        return 20;
+    }
+
+    /**
+     * @return the number of times each request is replayed
+     * @since 1.2.4
+     */
+    default int getReplayIterations()
+    {
+        return 1;
+    }
+
+    /**
+     * @return the maximum number of requests replayed at the same time
+     * @since 1.2.4
+     */
+    default int getReplayParallelism()
+    {
+        return 1;
+    }
+
+    /**
+     * @return the identifiers of the sub-wikis that must be initialized for the node to be reported as ready
+     * @since 1.2.4
+     */
+    default List<String> getReadinessWikis()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the percentage (between 0 and 100) of the sub-wikis that must be initialized for the node to be
+     *         reported as ready
+     * @since 1.2.4
+     */
+    default int getReadinessPercentage()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the identifiers of the nodes of the cluster among which the sub-wikis to initialize are partitioned,
+     *         each node initializing only its own share of them
+     * @since 1.2.4
+     */
+    default List<String> getClusterNodes()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the identifier of the current node in the cluster, or {@code null} to use the host name
+     * @since 1.2.4
+     */
+    default String getClusterNodeId()
+    {
+        return null;
+    }
+
+    /**
+     * @return the path of a file shared by the nodes of the cluster, in which each node periodically renews a lease
+     *         so that the sub-wikis are partitioned among the live nodes, or {@code null} if none
+     * @since 1.2.4
+     */
+    default String getClusterLeaseFile()
+    {
+        return null;
+    }
+
+    /**
+     * @return the duration after which a node that did not renew its lease is not considered part of the cluster
+     *         anymore
+     * @since 1.2.4
+     */
+    default Duration getClusterLeaseDuration()
+    {
+        return Duration.ofMinutes(10);
+    }
+
+    /**
+     * @return true if the number of sub-wikis initialized at the same time should be adjusted at runtime according
+     *         to the initialization latency and to the requests being served, {@link #getParallelism()} being the
+     *         maximum
+     * @since 1.2.4
+     */
+    default boolean isAdaptiveParallelism()
+    {
+        return false;
+    }
+
+    /**
+     * @return true if the sub-wikis that did not change since their last successful initialization (same database
+     *         version and same installed extensions) should not be initialized eagerly on startup, but on their
+     *         first access or by the background prefetch of the lazy initialization
+     * @since 1.2.4
+     */
+    default boolean isFastRestart()
+    {
+        return false;
+    }
+
+    /**
+     * @return the number of sub-wikis to enumerate at once when initializing all the sub-wikis, their initialization
+     *         starting as soon as the first page is loaded, or 0 to load every sub-wiki before initializing them; not
+     *         used when dependencies between sub-wikis or descriptor property criteria are configured
+     * @since 1.2.4
+     */
+    default int getEnumerationPageSize()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the patterns matching the identifiers of the sub-wikis to initialize in addition to
+     *         {@link #getInitializableWikis()}; patterns are globs (e.g. {@code acme-*}) unless prefixed with
+     *         {@code regex:}
+     * @since 1.2.4
+     */
+    default List<String> getIncludedWikis()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the patterns matching the identifiers of the sub-wikis that should never be initialized by the Wiki
+     *         Initializer, with the same syntax as {@link #getIncludedWikis()}
+     * @since 1.2.4
+     */
+    default List<String> getExcludedWikis()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the {@code property=pattern} criteria that the descriptor of a sub-wiki must all match for the
+     *         sub-wiki to be initialized in addition to {@link #getInitializableWikis()}; the supported properties
+     *         are {@code id}, {@code prettyName}, {@code owner}, {@code description} and
+     *         {@code <propertyGroup>.<property>}, the patterns having the same syntax as {@link #getIncludedWikis()}
+     * @since 1.2.4
+     */
+    default List<String> getSelectedWikiProperties()
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the time after which an initialized sub-wiki that was not accessed is evicted, i.e. its warmed up
+     *         documents are removed from the document cache (the sub-wiki stays initialized), or {@code null} to never
+     *         evict sub-wikis; requires {@link #isAccessTrackingEnabled()}
+     * @since 1.2.4
+     */
+    default Duration getEvictionIdleTime()
+    {
+        return null;
+    }
+
+    /**
+     * @return true if each sub-wiki should be initialized on its own virtual thread when the JVM supports them (Java
+     *         21 or later), {@link #getParallelism()} still limiting the number of sub-wikis initialized at the same
+     *         time; a pool of platform threads is used otherwise
+     * @since 1.2.4
+     */
+    default boolean isVirtualThreads()
+    {
+        return false;
+    }
+
+    /**
+     * @return the identifiers of the sub-wikis that each sub-wiki depends on, indexed by sub-wiki identifier (the
+     *         sub-wikis listed in {@code wikiInitializer.dependencies}, with their dependencies listed in
+     *         {@code wikiInitializer.dependencies.<wikiId>.value}); a sub-wiki is initialized only once the sub-wikis
+     *         it depends on and that are initialized at the same time are initialized
+     * @since 1.2.4
+     */
+    default Map<String, List<String>> getWikiDependencies()
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @return the {@code <propertyGroup>.<property>} descriptor property listing the identifiers of the sub-wikis that
+     *         a sub-wiki depends on, in addition to {@link #getWikiDependencies()}, or {@code null} to ignore the
+     *         descriptors
+     * @since 1.2.4
+     */
+    default String getWikiDependenciesProperty()
+    {
+        return null;
+    }
+
+    /**
+     * @return the time left to the sub-wikis being initialized to finish when the application stops, after which
+     *         their initialization is interrupted; the sub-wikis not started yet are never initialized
+     * @since 1.2.4
+     */
+    default Duration getShutdownGracePeriod()
+    {
+        return Duration.ofSeconds(30);
+    }
 }
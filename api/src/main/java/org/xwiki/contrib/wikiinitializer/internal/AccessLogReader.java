@@ -0,0 +1,78 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Extract the most requested URLs from an access log written in the common or combined log format.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public final class AccessLogReader
+{
+    /**
+     * Only the successful GET requests are replayable without side effects.
+     */
+    private static final Pattern REQUEST_PATTERN = Pattern.compile("\"GET (\\S+) HTTP/[^\"]*\" 2\\d\\d ");
+
+    private AccessLogReader()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param file the access log to read
+     * @param count the maximum number of URLs to return
+     * @return the paths (including the query string) of the most requested URLs, the most requested first
+     * @throws IOException if the access log cannot be read
+     */
+    public static List<String> getMostRequestedURLs(Path file, int count) throws IOException
+    {
+        Map<String, Integer> requestCounts = new HashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = REQUEST_PATTERN.matcher(line);
+                if (matcher.find()) {
+                    requestCounts.merge(matcher.group(1), 1, Integer::sum);
+                }
+            }
+        }
+
+        return requestCounts.entrySet().stream()
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(count)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+}
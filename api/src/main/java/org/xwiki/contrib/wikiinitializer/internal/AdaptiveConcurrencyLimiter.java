@@ -0,0 +1,164 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Limit the number of concurrent wiki initializations with an additive increase / multiplicative decrease (AIMD)
+ * algorithm. The limit grows while the initializations are as fast as expected and shrinks as soon as one of them
+ * fails or is much slower than expected, which happens when a shared resource like the database connection pool is
+ * saturated. The requests being served by the server are subtracted from the limit so that they keep priority.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public final class AdaptiveConcurrencyLimiter
+{
+    /**
+     * An initialization taking more than this factor times its expected duration indicates a congestion.
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    private static final double DECREASE_FACTOR = 0.5;
+
+    /**
+     * The weight of the last initialization in the average duration used when the expected duration is unknown.
+     */
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    /**
+     * The interval at which waiting initializations check the number of requests being served.
+     */
+    private static final long LIVE_REQUESTS_CHECK_INTERVAL = 100L;
+
+    private final int maxLimit;
+
+    private final IntSupplier activeRequests;
+
+    private final ToLongFunction<String> expectedDurations;
+
+    private double limit = 1;
+
+    private boolean slowStart = true;
+
+    private int inFlight;
+
+    private double averageDuration = -1;
+
+    /**
+     * @param maxLimit the maximum number of concurrent initializations
+     * @param activeRequests gives the number of requests being served
+     * @param expectedDurations gives the expected initialization duration of a wiki, in milliseconds, or a negative
+     *            value when unknown
+     */
+    public AdaptiveConcurrencyLimiter(int maxLimit, IntSupplier activeRequests,
+        ToLongFunction<String> expectedDurations)
+    {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.activeRequests = activeRequests;
+        this.expectedDurations = expectedDurations;
+    }
+
+    /**
+     * Wait until a new initialization is allowed to start.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException
+    {
+        while (this.inFlight >= getEffectiveLimit()) {
+            // Timed wait since the number of requests being served changes without notification.
+            wait(LIVE_REQUESTS_CHECK_INTERVAL);
+        }
+
+        this.inFlight++;
+    }
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return the expected initialization duration of the wiki, in milliseconds, or a negative value when unknown;
+     *         to be read before the initialization starts, since the initialization records its own duration
+     */
+    public long getExpectedDuration(String wikiId)
+    {
+        return this.expectedDurations.applyAsLong(wikiId);
+    }
+
+    /**
+     * Report the end of an initialization started after {@link #acquire()} and adjust the limit accordingly.
+     *
+     * @param expectedDuration the expected duration of the initialization, as returned by
+     *            {@link #getExpectedDuration(String)} before it started
+     * @param durationNanos the duration of the initialization, in nanoseconds
+     * @param success true if the initialization succeeded
+     */
+    public synchronized void release(long expectedDuration, long durationNanos, boolean success)
+    {
+        this.inFlight--;
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        double reference = (expectedDuration >= 0) ? expectedDuration : this.averageDuration;
+
+        if (!success || (reference > 0 && durationMillis > reference * LATENCY_TOLERANCE)) {
+            this.limit = Math.max(1, this.limit * DECREASE_FACTOR);
+            this.slowStart = false;
+        } else if (this.slowStart) {
+            // Double the limit every round of initializations until the first congestion.
+            this.limit = Math.min(this.maxLimit, this.limit + 1);
+        } else {
+            // Grow the limit by one every round of initializations.
+            this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+        }
+
+        if (success) {
+            this.averageDuration = (this.averageDuration < 0) ? durationMillis
+                : (1 - AVERAGE_WEIGHT) * this.averageDuration + AVERAGE_WEIGHT * durationMillis;
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Release a slot obtained through {@link #acquire()} without starting an initialization, e.g. because it has been
+     * canceled meanwhile.
+     */
+    public synchronized void cancel()
+    {
+        this.inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * @return the current number of initializations allowed to run at the same time, ignoring the requests being
+     *         served
+     */
+    public synchronized int getLimit()
+    {
+        return (int) this.limit;
+    }
+
+    private int getEffectiveLimit()
+    {
+        return Math.max(1, Math.min((int) this.limit, this.maxLimit - this.activeRequests.getAsInt()));
+    }
+}
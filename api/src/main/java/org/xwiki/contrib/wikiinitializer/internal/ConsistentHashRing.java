@@ -0,0 +1,82 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring mapping keys to nodes, so that adding or removing a node only moves the keys of
+ * that node. Each node is placed several times on the ring to spread the keys evenly.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public final class ConsistentHashRing
+{
+    private static final int VIRTUAL_NODES = 128;
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param nodes the identifiers of the nodes
+     */
+    public ConsistentHashRing(Collection<String> nodes)
+    {
+        for (String node : nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                this.ring.put(hash(node + '#' + i), node);
+            }
+        }
+    }
+
+    /**
+     * @param key the key to map
+     * @return the node owning the key, or {@code null} if the ring is empty
+     */
+    public String getNode(String key)
+    {
+        if (this.ring.isEmpty()) {
+            return null;
+        }
+
+        Map.Entry<Long, String> entry = this.ring.ceilingEntry(hash(key));
+
+        return (entry != null) ? entry.getValue() : this.ring.firstEntry().getValue();
+    }
+
+    private static long hash(String value)
+    {
+        try {
+            // MD5 is only used for its distribution, which is the same on every node.
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not supported", e);
+        }
+    }
+}
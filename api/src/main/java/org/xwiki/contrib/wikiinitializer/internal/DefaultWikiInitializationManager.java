@@ -19,30 +19,39 @@
  */
 package org.xwiki.contrib.wikiinitializer.internal;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
-import javax.servlet.http.Cookie;
 
 import org.slf4j.Logger;
 import org.xwiki.bridge.event.ActionExecutingEvent;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.container.servlet.ServletContainerException;
 import org.xwiki.container.servlet.ServletContainerInitializer;
 import org.xwiki.contrib.wikiinitializer.WikiInitializationException;
 import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationState;
 import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
 import org.xwiki.environment.Environment;
 import org.xwiki.environment.internal.ServletEnvironment;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobExecutor;
+import org.xwiki.job.JobStatusStore;
+import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.wiki.descriptor.WikiDescriptor;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
-import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.web.Utils;
 import com.xpn.xwiki.web.XWikiEngineContext;
 import com.xpn.xwiki.web.XWikiServletContext;
@@ -81,24 +90,181 @@ public class DefaultWikiInitializationManager implements WikiInitializationManag
     @Inject
     private Provider<XWikiContext> contextProvider;
 
+    @Inject
+    private Provider<JobExecutor> jobExecutorProvider;
+
+    @Inject
+    private Provider<JobStatusStore> jobStatusStoreProvider;
+
+    @Inject
+    private WikiInitializationMetrics metrics;
+
+    @Inject
+    private WikiInitializationExecutor executor;
+
+    @Inject
+    private WikiInitializationHistory history;
+
+    @Inject
+    private WikiCacheWarmer cacheWarmer;
+
+    @Inject
+    private WikiInitializationJournal journal;
+
+    @Inject
+    private DistributionWizardStarter distributionWizardStarter;
+
+    @Inject
+    private WikiAccessTracker accessTracker;
+
+    private final Map<String, CompletableFuture<Void>> initializations = new ConcurrentHashMap<>();
+
+    private final Set<String> failedWikis = ConcurrentHashMap.newKeySet();
+
     @Override
     public void initialize(WikiDescriptor descriptor) throws WikiInitializationException
     {
         String wikiId = (descriptor != null) ? descriptor.getId() : XWiki.DEFAULT_MAIN_WIKI;
+
+        // Concurrent initializations of the same wiki (e.g. triggered by a first request and by the background
+        // prefetch) share a single run, and a wiki is initialized only once.
+        CompletableFuture<Void> initialization = new CompletableFuture<>();
+        CompletableFuture<Void> existingInitialization = initializations.putIfAbsent(wikiId, initialization);
+        if (existingInitialization != null) {
+            waitForInitialization(wikiId, existingInitialization);
+            return;
+        }
+
+        try {
+            initialize(descriptor, wikiId);
+            if (!XWiki.DEFAULT_MAIN_WIKI.equals(wikiId) && configurationProvider.get().isFastRestart()) {
+                journal.recordInitialization(wikiId);
+            }
+            // An abandoned initialization doesn't affect the state of the next ones.
+            if (initializations.get(wikiId) == initialization) {
+                failedWikis.remove(wikiId);
+            }
+            initialization.complete(null);
+        } catch (WikiInitializationException | RuntimeException | Error e) {
+            // Allow the initialization to be attempted again, and never leave the callers waiting for it, even when it
+            // fails with an error (e.g. a linkage error coming from a broken extension).
+            failedWikis.add(wikiId);
+            initializations.remove(wikiId, initialization);
+            initialization.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isInitialized(String wikiId)
+    {
+        CompletableFuture<Void> initialization = initializations.get(wikiId);
+
+        return initialization != null && initialization.isDone() && !initialization.isCompletedExceptionally();
+    }
+
+    @Override
+    public WikiInitializationState getState(String wikiId)
+    {
+        CompletableFuture<Void> initialization = initializations.get(wikiId);
+
+        if (initialization != null && !initialization.isDone()) {
+            return WikiInitializationState.INITIALIZING;
+        } else if (initialization != null && !initialization.isCompletedExceptionally()) {
+            return WikiInitializationState.INITIALIZED;
+        } else if (failedWikis.contains(wikiId)) {
+            return WikiInitializationState.FAILED;
+        } else {
+            return WikiInitializationState.NOT_INITIALIZED;
+        }
+    }
+
+    @Override
+    public boolean forget(String wikiId)
+    {
+        CompletableFuture<Void> initialization = initializations.get(wikiId);
+
+        return initialization != null && initialization.isDone() && initializations.remove(wikiId, initialization);
+    }
+
+    @Override
+    public boolean abandon(String wikiId)
+    {
+        CompletableFuture<Void> initialization = initializations.get(wikiId);
+        if (initialization != null && !initialization.isDone() && initializations.remove(wikiId, initialization)) {
+            failedWikis.add(wikiId);
+            initialization.completeExceptionally(new WikiInitializationException(
+                String.format("The initialization of wiki [%s] has been abandoned", wikiId)));
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private void waitForInitialization(String wikiId, CompletableFuture<Void> initialization)
+        throws WikiInitializationException
+    {
+        try {
+            initialization.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WikiInitializationException(
+                String.format("Interrupted while waiting for the initialization of wiki [%s]", wikiId), e);
+        } catch (ExecutionException e) {
+            throw new WikiInitializationException(String.format("Failed to initialize wiki with ID [%s]", wikiId),
+                e.getCause());
+        }
+    }
+
+    private void initialize(WikiDescriptor descriptor, String wikiId) throws WikiInitializationException
+    {
         logger.info("Initializing wiki [{}] ...", wikiId);
 
+        WikiInitializationEvent event = new WikiInitializationEvent(wikiId);
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
         try {
             if (wikiId.equals(XWiki.DEFAULT_MAIN_WIKI)) {
                 initializeMainWiki();
             } else {
                 initializeSubWiki(descriptor);
             }
+            success = true;
+            event.complete(null);
         } catch (Exception e) {
+            event.complete(e);
             throw new WikiInitializationException(String.format("Failed to initialize wiki with ID [%s]", wikiId), e);
+        } finally {
+            long duration = System.nanoTime() - start;
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(duration);
+            metrics.recordWikiInitialization(wikiId, duration, success);
+            if (success) {
+                history.recordDuration(wikiId, durationMillis);
+            }
+            logger.info("Initialization of wiki [{}] {} after [{}] ms", wikiId, success ? "succeeded" : "failed",
+                durationMillis);
         }
     }
 
-    private void initializeMainWiki() throws XWikiException, ServletContainerException
+    @Override
+    public Map<String, CompletableFuture<Void>> initialize(Collection<WikiDescriptor> descriptors, int concurrency,
+        Duration timeout)
+    {
+        return executor.initialize(descriptors, concurrency, timeout);
+    }
+
+    @Override
+    public JobStatus getSubWikisInitializationStatus()
+    {
+        Job job = jobExecutorProvider.get().getJob(SUBWIKIS_INITIALIZATION_JOB_ID);
+
+        return (job != null) ? job.getStatus()
+            : jobStatusStoreProvider.get().getJobStatus(SUBWIKIS_INITIALIZATION_JOB_ID);
+    }
+
+    private void initializeMainWiki() throws Exception
     {
         ServletEnvironment servletEnvironment = (ServletEnvironment) environment;
         XWikiEngineContext engineContext = new XWikiServletContext(servletEnvironment.getServletContext());
@@ -106,47 +272,84 @@ public class DefaultWikiInitializationManager implements WikiInitializationManag
         ServletContainerInitializer containerInitializer = containerInitializerProvider.get();
         String action = configuration.startDistributionWizardOnInitialization() ? ACTION_DISTRIBUTION : ACTION_VIEW;
 
-        XWikiServletRequestStub.Builder requestBuilder = new XWikiServletRequestStub.Builder();
-        requestBuilder.setRequestURL(configuration.getInitialRequestURL());
-
-        String contextPath = configuration.getInitialRequestContextPath();
-        if (contextPath == null) {
-            contextPath = servletEnvironment.getServletContext().getContextPath();
-        }
-        requestBuilder.setContextPath(contextPath);
-
-        requestBuilder.setRequestParameters(
-            configuration.getInitialRequestParameters().entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().toArray(new String[0]))));
-        requestBuilder.setCookies(configuration.getInitialRequestCookies().toArray(new Cookie[0]));
-        requestBuilder.setHeaders(configuration.getInitialRequestHeaders());
-        requestBuilder.setRemoteAddr(configuration.getInitialRequestRemoteAddr());
+        String defaultContextPath = servletEnvironment.getServletContext().getContextPath();
+        XWikiServletRequestStub request =
+            InitialRequestTemplate.fromConfiguration(configuration).createRequest(defaultContextPath);
 
-        XWikiContext context = Utils.prepareContext(action, requestBuilder.build(),
-            new XWikiServletResponseStub(), engineContext);
+        XWikiContext context = runPhase(XWiki.DEFAULT_MAIN_WIKI, WikiInitializationPhase.PREPARE_CONTEXT,
+            () -> Utils.prepareContext(action, request, new XWikiServletResponseStub(), engineContext));
         context.setMode(XWikiContext.MODE_SERVLET);
 
-        containerInitializer.initializeRequest(context.getRequest().getHttpServletRequest(), context);
-        containerInitializer.initializeResponse(context.getResponse());
-        containerInitializer.initializeSession(context.getRequest().getHttpServletRequest());
+        runPhase(XWiki.DEFAULT_MAIN_WIKI, WikiInitializationPhase.INITIALIZE_CONTAINER, () -> {
+            containerInitializer.initializeRequest(context.getRequest().getHttpServletRequest(), context);
+            containerInitializer.initializeResponse(context.getResponse());
+            containerInitializer.initializeSession(context.getRequest().getHttpServletRequest());
+            return null;
+        });
 
-        XWiki xwiki = XWiki.getXWiki(configuration.startDistributionWizardOnInitialization(), context);
+        // The distribution wizard waits for XWiki on its own thread, without delaying the main wiki.
+        runPhase(XWiki.DEFAULT_MAIN_WIKI, WikiInitializationPhase.GET_XWIKI, () -> XWiki.getXWiki(false, context));
 
         if (configuration.startDistributionWizardOnInitialization()) {
-            try {
+            distributionWizardStarter.start(this::startDistributionWizard, context);
+        }
+
+        // XWiki is not done initializing yet: the main wiki is warmed up by the sub-wikis initialization job.
+    }
+
+    private Void startDistributionWizard() throws Exception
+    {
+        // Runs on the thread of the distribution wizard starter, with a clone of the main wiki initialization context.
+        XWikiContext context = contextProvider.get();
+
+        return runPhase(XWiki.DEFAULT_MAIN_WIKI, WikiInitializationPhase.DISTRIBUTION, () -> {
+            XWiki xwiki = XWiki.getXWiki(true, context);
+            // Not an actual request: no end of action is notified and no access should be recorded.
+            return accessTracker.runUntracked(() -> {
                 observationManagerProvider.get().notify(new ActionExecutingEvent(ACTION_DISTRIBUTION),
                     xwiki.getDocument(xwiki.getDefaultPage(context), context), context);
-            } catch (Exception e) {
-                logger.error("Failed to auto-start XWiki Distribution", e);
-            }
+                return null;
+            });
+        });
+    }
+
+    private void warmUp(String wikiId, WikiInitializerConfiguration configuration, XWikiContext context)
+        throws Exception
+    {
+        if (configuration.isWarmUpEnabled()) {
+            runPhase(wikiId, WikiInitializationPhase.WARM_UP, () -> {
+                cacheWarmer.warmUp(wikiId, context);
+                return null;
+            });
+        }
+    }
+
+    private <T> T runPhase(String wikiId, WikiInitializationPhase phase, Callable<T> callable) throws Exception
+    {
+        WikiInitializationPhaseEvent event = new WikiInitializationPhaseEvent(wikiId, phase);
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            T result = callable.call();
+            event.complete(null);
+            return result;
+        } catch (Exception e) {
+            event.complete(e);
+            throw e;
+        } finally {
+            metrics.recordPhase(phase, System.nanoTime() - start);
         }
     }
 
-    private void initializeSubWiki(WikiDescriptor descriptor) throws XWikiException, WikiInitializationException
+    private void initializeSubWiki(WikiDescriptor descriptor) throws Exception
     {
         XWikiContext context = contextProvider.get();
         if (context != null && context.getWiki() != null) {
-            context.getWiki().initializeWiki(descriptor.getId(), false, context);
+            // Wait for the end of the platform initialization job so that the measured time is meaningful and the
+            // parallelism of the initializer is the actual number of wikis being initialized at the same time.
+            runPhase(descriptor.getId(), WikiInitializationPhase.INITIALIZE_WIKI,
+                () -> context.getWiki().initializeWiki(descriptor.getId(), true, context));
+            warmUp(descriptor.getId(), configurationProvider.get(), context);
         } else {
             throw new WikiInitializationException(String.format("Invalid context or wiki found when initializing [%s]",
                 descriptor.getId()));
@@ -20,9 +20,7 @@
 package org.xwiki.contrib.wikiinitializer.internal;
 
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,216 +31,303 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.servlet.http.Cookie;
 
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
 import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationScheduling;
 import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
 import org.xwiki.wiki.descriptor.WikiDescriptor;
 
 /**
- * Default implementation of {@link WikiInitializerConfiguration}.
+ * Default implementation of {@link WikiInitializerConfiguration}. The configuration is read once from
+ * {@code xwiki.properties} into a {@link WikiInitializerConfigurationSnapshot}.
  *
  * @version $Id$
  * @since 1.0
  */
 @Component
 @Singleton
-public class DefaultWikiInitializerConfiguration implements WikiInitializerConfiguration
+public class DefaultWikiInitializerConfiguration implements WikiInitializerConfiguration, Initializable
 {
-    private static final String CONTEXT_PATH = "contextPath";
-
-    private static final String COOKIES = "cookies";
-
-    private static final String DOT = ".";
-
-    private static final String HEADERS = "headers";
-
-    private static final String PARAMETERS = "parameters";
-
-    private static final String REMOTE_ADDR = "remoteAddress";
-
-    private static final String URL = "url";
-
-    private static final String XWIKI = "xwiki";
-
-    private static final String CONFIGURATION_PREFIX = "wikiInitializer.";
-
-    private static final String INITIAL_REQUEST_PREFIX = CONFIGURATION_PREFIX + "initialRequest.";
-
-    private static final String KEY_INITIALIZE_MAIN_WIKI = CONFIGURATION_PREFIX + "initializeMainWiki";
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
 
-    private static final String KEY_INITIALIZE_SUB_WIKIS = CONFIGURATION_PREFIX + "initializeSubWikis";
+    @Inject
+    private Logger logger;
 
-    private static final String KEY_START_DISTRIBUTION_WIZARD_ON_INIT = CONFIGURATION_PREFIX
-        + "startDistributionWizardOnInit";
+    private WikiInitializerConfigurationSnapshot snapshot;
 
-    private static final String KEY_INITIALIZABLE_SUB_WIKIS = CONFIGURATION_PREFIX + "initializableSubWikis";
+    @Override
+    public void initialize()
+    {
+        this.snapshot = new WikiInitializerConfigurationSnapshot(this.configuration, this.logger);
+    }
 
-    private static final String INITIAL_REQUEST_URL = INITIAL_REQUEST_PREFIX + URL;
+    @Override
+    public boolean initializeMainWiki()
+    {
+        return this.snapshot.isInitializeMainWiki();
+    }
 
-    private static final String LEGACY_INITIAL_REQUEST_URL = INITIAL_REQUEST_PREFIX + XWIKI + DOT + URL;
+    @Override
+    public boolean initializeAllSubWikis()
+    {
+        return this.snapshot.isInitializeAllSubWikis();
+    }
 
-    private static final String INITIAL_REQUEST_CONTEXT_PATH = INITIAL_REQUEST_PREFIX + CONTEXT_PATH;
+    @Override
+    public boolean startDistributionWizardOnInitialization()
+    {
+        return this.snapshot.isStartDistributionWizardOnInitialization();
+    }
 
-    private static final String LEGACY_INITIAL_REQUEST_CONTEXT_PATH =
-        INITIAL_REQUEST_PREFIX + XWIKI + DOT + CONTEXT_PATH;
+    @Override
+    public URL getInitialRequestURL()
+    {
+        return this.snapshot.getInitialRequestURL();
+    }
 
-    private static final String INITIAL_REQUEST_PARAMETERS = INITIAL_REQUEST_PREFIX + PARAMETERS;
+    @Override
+    public String getInitialRequestContextPath()
+    {
+        return this.snapshot.getInitialRequestContextPath();
+    }
 
-    private static final String LEGACY_INITIAL_REQUEST_PARAMETERS = INITIAL_REQUEST_PREFIX + XWIKI + DOT + PARAMETERS;
+    @Override
+    public Map<String, List<String>> getInitialRequestParameters()
+    {
+        return this.snapshot.getInitialRequestParameters();
+    }
 
-    private static final String INITIAL_REQUEST_HEADERS = INITIAL_REQUEST_PREFIX + HEADERS;
+    @Override
+    public Map<String, List<String>> getInitialRequestHeaders()
+    {
+        return this.snapshot.getInitialRequestHeaders();
+    }
 
-    private static final String LEGACY_INITIAL_REQUEST_HEADERS = INITIAL_REQUEST_PREFIX + XWIKI + DOT + HEADERS;
+    @Override
+    public List<Cookie> getInitialRequestCookies()
+    {
+        // Cookies are mutable so we don't expose the instances of the snapshot.
+        return this.snapshot.getInitialRequestCookies().stream().map(cookie -> (Cookie) cookie.clone())
+            .collect(Collectors.toList());
+    }
 
-    private static final String INITIAL_REQUEST_COOKIES = INITIAL_REQUEST_PREFIX + COOKIES;
+    @Override
+    public String getInitialRequestRemoteAddr()
+    {
+        return this.snapshot.getInitialRequestRemoteAddr();
+    }
 
-    private static final String LEGACY_INITIAL_REQUEST_COOKIES = INITIAL_REQUEST_PREFIX + XWIKI + DOT + COOKIES;
+    @Override
+    public Set<WikiDescriptor> getInitializableWikis()
+    {
+        return this.snapshot.getInitializableWikis();
+    }
 
-    private static final String INITIAL_REQUEST_REMOTE_ADDR = INITIAL_REQUEST_PREFIX + REMOTE_ADDR;
+    @Override
+    public int getParallelism()
+    {
+        return this.snapshot.getParallelism();
+    }
 
-    private static final String LEGACY_INITIAL_REQUEST_REMOTE_ADDR = INITIAL_REQUEST_PREFIX + XWIKI + DOT + REMOTE_ADDR;
+    @Override
+    public Duration getInitializationTimeout()
+    {
+        return this.snapshot.getInitializationTimeout();
+    }
 
-    private static final String VALUE_SUFFIX = ".value";
+    @Override
+    public int getMaxRetries()
+    {
+        return this.snapshot.getMaxRetries();
+    }
 
-    private static final String LEGACY_PROPERTY_WARNING = "Configuration key [{}] is deprecated and may be removed in"
-        + " a future release, please use [{}] instead.";
+    @Override
+    public Duration getRetryDelay()
+    {
+        return this.snapshot.getRetryDelay();
+    }
 
-    @Inject
-    @Named("xwikiproperties")
-    private ConfigurationSource configuration;
+    @Override
+    public boolean isAccessTrackingEnabled()
+    {
+        return this.snapshot.isAccessTrackingEnabled();
+    }
 
-    @Inject
-    private Logger logger;
+    @Override
+    public List<String> getPriorityWikis()
+    {
+        return this.snapshot.getPriorityWikis();
+    }
 
     @Override
-    public boolean initializeMainWiki()
+    public WikiInitializationScheduling getScheduling()
     {
-        return configuration.getProperty(KEY_INITIALIZE_MAIN_WIKI, false);
+        return this.snapshot.getScheduling();
     }
 
     @Override
-    public boolean initializeAllSubWikis()
+    public boolean isLazyInitialization()
     {
-        return configuration.getProperty(KEY_INITIALIZE_SUB_WIKIS, false);
+        return this.snapshot.isLazyInitialization();
     }
 
     @Override
-    public boolean startDistributionWizardOnInitialization()
+    public boolean isWarmUpEnabled()
     {
-        return configuration.getProperty(KEY_START_DISTRIBUTION_WIZARD_ON_INIT, false);
+        return this.snapshot.isWarmUpEnabled();
     }
 
     @Override
-    public URL getInitialRequestURL()
+    public List<String> getWarmUpDocuments()
     {
-        return getProperty(INITIAL_REQUEST_URL, LEGACY_INITIAL_REQUEST_URL, java.net.URL.class);
+        return this.snapshot.getWarmUpDocuments();
     }
 
     @Override
-    public String getInitialRequestContextPath()
+    public List<String> getWarmUpSpaces()
     {
-        return getProperty(INITIAL_REQUEST_CONTEXT_PATH, LEGACY_INITIAL_REQUEST_CONTEXT_PATH, String.class);
+        return this.snapshot.getWarmUpSpaces();
     }
 
     @Override
-    public Map<String, List<String>> getInitialRequestParameters()
+    public int getWarmUpConcurrency()
     {
-        List<String> parameterNames = getProperty(INITIAL_REQUEST_PARAMETERS, LEGACY_INITIAL_REQUEST_PARAMETERS,
-            new ArrayList<>(0));
+        return this.snapshot.getWarmUpConcurrency();
+    }
 
-        String key = (StringUtils.isNotBlank(configuration.getProperty(LEGACY_INITIAL_REQUEST_PARAMETERS)))
-            ? LEGACY_INITIAL_REQUEST_PARAMETERS : INITIAL_REQUEST_PARAMETERS;
+    @Override
+    public List<String> getReplayURLs()
+    {
+        return this.snapshot.getReplayURLs();
+    }
 
-        Map<String, List<String>> parameters = new HashMap<>();
-        for (String parameterName : parameterNames) {
-            if (!parameters.containsKey(parameterName)) {
-                parameters.put(parameterName, new ArrayList<>());
-            }
+    @Override
+    public String getReplayAccessLog()
+    {
+        return this.snapshot.getReplayAccessLog();
+    }
 
-            parameters.get(parameterName).addAll(
-                configuration.getProperty(key + DOT + parameterName + VALUE_SUFFIX, new ArrayList<>(0)));
-        }
+    @Override
+    public int getReplayAccessLogSize()
+    {
+        return this.snapshot.getReplayAccessLogSize();
+    }
 
-        return parameters;
+    @Override
+    public int getReplayIterations()
+    {
+        return this.snapshot.getReplayIterations();
     }
 
     @Override
-    public Map<String, List<String>> getInitialRequestHeaders()
+    public int getReplayParallelism()
     {
-        List<String> headerNames = getProperty(INITIAL_REQUEST_HEADERS, LEGACY_INITIAL_REQUEST_HEADERS,
-            new ArrayList<>(0));
+        return this.snapshot.getReplayParallelism();
+    }
 
-        String key = (StringUtils.isNotBlank(configuration.getProperty(LEGACY_INITIAL_REQUEST_HEADERS)))
-            ? LEGACY_INITIAL_REQUEST_HEADERS : INITIAL_REQUEST_HEADERS;
+    @Override
+    public List<String> getReadinessWikis()
+    {
+        return this.snapshot.getReadinessWikis();
+    }
 
-        Map<String, List<String>> headers = new HashMap<>();
-        for (String headerName : headerNames) {
-            if (!headers.containsKey(headerName)) {
-                headers.put(headerName, new ArrayList<>());
-            }
+    @Override
+    public int getReadinessPercentage()
+    {
+        return this.snapshot.getReadinessPercentage();
+    }
 
-            headers.get(headerName).addAll(
-                configuration.getProperty(key + DOT + headerName + VALUE_SUFFIX, new ArrayList<>(0)));
-        }
+    @Override
+    public List<String> getClusterNodes()
+    {
+        return this.snapshot.getClusterNodes();
+    }
 
-        return headers;
+    @Override
+    public String getClusterNodeId()
+    {
+        return this.snapshot.getClusterNodeId();
     }
 
     @Override
-    public List<Cookie> getInitialRequestCookies()
+    public String getClusterLeaseFile()
     {
-        List<String> cookieNames = getProperty(INITIAL_REQUEST_COOKIES, LEGACY_INITIAL_REQUEST_COOKIES,
-            new ArrayList<>(0));
+        return this.snapshot.getClusterLeaseFile();
+    }
 
-        String key = (StringUtils.isNotBlank(configuration.getProperty(LEGACY_INITIAL_REQUEST_COOKIES)))
-            ? LEGACY_INITIAL_REQUEST_COOKIES : INITIAL_REQUEST_COOKIES;
+    @Override
+    public Duration getClusterLeaseDuration()
+    {
+        return this.snapshot.getClusterLeaseDuration();
+    }
 
-        return cookieNames.stream().map(cookieName -> new Cookie(cookieName,
-            configuration.getProperty(key + DOT + cookieName + VALUE_SUFFIX))).collect(Collectors.toList());
+    @Override
+    public boolean isAdaptiveParallelism()
+    {
+        return this.snapshot.isAdaptiveParallelism();
     }
 
     @Override
-    public String getInitialRequestRemoteAddr()
+    public boolean isFastRestart()
     {
-        return getProperty(INITIAL_REQUEST_REMOTE_ADDR, LEGACY_INITIAL_REQUEST_REMOTE_ADDR, String.class);
+        return this.snapshot.isFastRestart();
     }
 
     @Override
-    public Set<WikiDescriptor> getInitializableWikis()
+    public int getEnumerationPageSize()
     {
-        List<String> wikiIDs = configuration.getProperty(KEY_INITIALIZABLE_SUB_WIKIS, Collections.emptyList());
-        return wikiIDs.stream().map(wikiID -> new WikiDescriptor(wikiID, wikiID)).collect(Collectors.toSet());
+        return this.snapshot.getEnumerationPageSize();
     }
 
-    private <T> T getProperty(String key, String legacyKey, Class<T> valueClass)
+    @Override
+    public List<String> getIncludedWikis()
     {
-        T value = configuration.getProperty(key, valueClass);
+        return this.snapshot.getIncludedWikis();
+    }
 
-        if (value == null) {
-            value = configuration.getProperty(legacyKey, valueClass);
+    @Override
+    public List<String> getExcludedWikis()
+    {
+        return this.snapshot.getExcludedWikis();
+    }
 
-            if (value != null) {
-                logger.warn(LEGACY_PROPERTY_WARNING, legacyKey, key);
-            }
-        }
+    @Override
+    public List<String> getSelectedWikiProperties()
+    {
+        return this.snapshot.getSelectedWikiProperties();
+    }
 
-        return value;
+    @Override
+    public Duration getEvictionIdleTime()
+    {
+        return this.snapshot.getEvictionIdleTime();
     }
 
-    private <T> T getProperty(String key, String legacyKey, T def)
+    @Override
+    public boolean isVirtualThreads()
     {
-        T value = configuration.getProperty(key, def);
+        return this.snapshot.isVirtualThreads();
+    }
 
-        if (value == null) {
-            value = configuration.getProperty(legacyKey, def);
+    @Override
+    public Map<String, List<String>> getWikiDependencies()
+    {
+        return this.snapshot.getWikiDependencies();
+    }
 
-            if (value != null) {
-                logger.warn(LEGACY_PROPERTY_WARNING, legacyKey, key);
-            }
-        }
+    @Override
+    public String getWikiDependenciesProperty()
+    {
+        return this.snapshot.getWikiDependenciesProperty();
+    }
 
-        return value;
+    @Override
+    public Duration getShutdownGracePeriod()
+    {
+        return this.snapshot.getShutdownGracePeriod();
     }
 }
@@ -0,0 +1,214 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Start the distribution wizard of the main wiki asynchronously, so that the evaluation of the distribution steps and
+ * the work they do on the extension repositories don't delay the moment the main wiki accepts requests. The task can
+ * be canceled and its outcome is kept, and logged, once it's done.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = DistributionWizardStarter.class)
+@Singleton
+public class DistributionWizardStarter implements Disposable
+{
+    /**
+     * The state of the distribution wizard start.
+     *
+     * @version $Id$
+     */
+    public enum State
+    {
+        /**
+         * The distribution wizard has not been started.
+         */
+        NOT_STARTED,
+
+        /**
+         * The distribution wizard is being started.
+         */
+        RUNNING,
+
+        /**
+         * The distribution wizard has been started.
+         */
+        SUCCEEDED,
+
+        /**
+         * The start of the distribution wizard failed.
+         */
+        FAILED,
+
+        /**
+         * The start of the distribution wizard has been canceled.
+         */
+        CANCELED
+    }
+
+    private static final String THREAD_NAME = "Wiki Initializer Distribution Wizard";
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    private ExecutorService executor;
+
+    private volatile Future<?> task;
+
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    @Override
+    public void dispose()
+    {
+        cancel();
+
+        synchronized (this) {
+            if (this.executor != null) {
+                this.executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Run the given start of the distribution wizard on a dedicated thread, with a clone of the given context. The
+     * distribution wizard is started only once, the next calls are ignored.
+     *
+     * @param startTask the start of the distribution wizard
+     * @param callerContext the context of the main wiki initialization, cloned for the task
+     * @return the outcome of the start of the distribution wizard
+     */
+    public synchronized CompletableFuture<Void> start(Callable<Void> startTask, XWikiContext callerContext)
+    {
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadExecutor(
+                new BasicThreadFactory.Builder().namingPattern(THREAD_NAME).daemon(true).build());
+            XWikiContext context = callerContext.clone();
+            this.task = this.executor.submit(() -> run(startTask, context));
+            // Release the thread once the task is done.
+            this.executor.shutdown();
+        }
+
+        return this.result;
+    }
+
+    /**
+     * Cancel the start of the distribution wizard, interrupting it if it's running.
+     *
+     * @return true if the start of the distribution wizard has been canceled
+     */
+    public synchronized boolean cancel()
+    {
+        if (this.task != null && this.result.completeExceptionally(
+            new CancellationException("The start of the distribution wizard has been canceled"))) {
+            this.task.cancel(true);
+            this.logger.info("Canceled the start of the distribution wizard");
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the state of the start of the distribution wizard
+     */
+    public State getState()
+    {
+        if (this.task == null) {
+            return State.NOT_STARTED;
+        } else if (!this.result.isDone()) {
+            return State.RUNNING;
+        } else if (this.result.isCancelled()) {
+            return State.CANCELED;
+        } else if (this.result.isCompletedExceptionally()) {
+            return State.FAILED;
+        } else {
+            return State.SUCCEEDED;
+        }
+    }
+
+    /**
+     * @return the error that made the start of the distribution wizard fail, or {@code null}
+     */
+    public Throwable getError()
+    {
+        return this.result.handle((value, error) -> error).getNow(null);
+    }
+
+    private void run(Callable<Void> startTask, XWikiContext context)
+    {
+        ExecutionContext executionContext = new ExecutionContext();
+        context.declareInExecutionContext(executionContext);
+
+        try {
+            this.executionContextManager.initialize(executionContext);
+        } catch (ExecutionContextException e) {
+            fail(e);
+            return;
+        }
+
+        try {
+            startTask.call();
+            if (this.result.complete(null)) {
+                this.logger.info("Started the distribution wizard");
+            }
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    private void fail(Exception e)
+    {
+        // Errors caused by the cancellation of the task are expected.
+        if (this.result.completeExceptionally(e)) {
+            this.logger.error("Failed to auto-start XWiki Distribution", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe statistics about a set of durations: count, total, minimum, maximum and a histogram with fixed
+ * buckets. The getters follow the MXBean conventions so that instances can be exposed over JMX.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public class DurationStatistics
+{
+    private static final long[] BUCKET_UPPER_BOUNDS = {10, 50, 100, 500, 1000, 5000, 10000, 30000, 60000};
+
+    private static final String BUCKET_LABEL_PREFIX = "le_";
+
+    private static final String BUCKET_LABEL_SUFFIX = "ms";
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder total = new LongAdder();
+
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_UPPER_BOUNDS.length + 1);
+
+    /**
+     * Record a new duration.
+     *
+     * @param durationNanos the duration, in nanoseconds
+     */
+    public void record(long durationNanos)
+    {
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+
+        this.count.increment();
+        this.total.add(durationMillis);
+        this.min.accumulate(durationMillis);
+        this.max.accumulate(durationMillis);
+
+        int bucket = 0;
+        while (bucket < BUCKET_UPPER_BOUNDS.length && durationMillis > BUCKET_UPPER_BOUNDS[bucket]) {
+            bucket++;
+        }
+        this.buckets.incrementAndGet(bucket);
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount()
+    {
+        return this.count.sum();
+    }
+
+    /**
+     * @return the sum of the recorded durations, in milliseconds
+     */
+    public long getTotalTime()
+    {
+        return this.total.sum();
+    }
+
+    /**
+     * @return the smallest recorded duration, in milliseconds
+     */
+    public long getMinTime()
+    {
+        return (getCount() > 0) ? this.min.get() : 0;
+    }
+
+    /**
+     * @return the largest recorded duration, in milliseconds
+     */
+    public long getMaxTime()
+    {
+        return this.max.get();
+    }
+
+    /**
+     * @return the average of the recorded durations, in milliseconds
+     */
+    public double getMeanTime()
+    {
+        long currentCount = getCount();
+
+        return (currentCount > 0) ? (double) getTotalTime() / currentCount : 0;
+    }
+
+    /**
+     * @return the number of durations per bucket, indexed by the label of the bucket (e.g. {@code le_100ms} for the
+     *         durations between 50 and 100 milliseconds)
+     */
+    public Map<String, Long> getHistogram()
+    {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS.length; i++) {
+            histogram.put(BUCKET_LABEL_PREFIX + BUCKET_UPPER_BOUNDS[i] + BUCKET_LABEL_SUFFIX, this.buckets.get(i));
+        }
+        histogram.put(BUCKET_LABEL_PREFIX + "inf", this.buckets.get(BUCKET_UPPER_BOUNDS.length));
+
+        return histogram;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationState;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWiki;
+
+/**
+ * Initialize in the background the sub-wikis that became eligible to an eager initialization after the startup, i.e.
+ * created, whose descriptor changed or newly listed in the configuration, without enumerating the whole farm again.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = IncrementalWikiInitializer.class)
+@Singleton
+public class IncrementalWikiInitializer
+{
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    private Provider<WikiDescriptorManager> wikiDescriptorManagerProvider;
+
+    @Inject
+    private Provider<WikiInitializationManager> wikiInitializationManagerProvider;
+
+    @Inject
+    private WikiInitializationExecutor executor;
+
+    @Inject
+    private WikiInitializationSharding sharding;
+
+    /**
+     * Start the initialization of the given sub-wikis that should be initialized eagerly according to the current
+     * configuration and are not initialized yet.
+     *
+     * @param wikiIds the identifiers of the sub-wikis that changed
+     */
+    public void initialize(Collection<String> wikiIds)
+    {
+        initialize(wikiIds, false);
+    }
+
+    /**
+     * Start the initialization of the given sub-wikis, newly listed in the configuration file, that are not
+     * initialized yet. They are initialized even though the configuration loaded on startup doesn't list them.
+     *
+     * @param wikiIds the identifiers of the sub-wikis newly listed in the configuration file
+     */
+    public void initializeListedWikis(Collection<String> wikiIds)
+    {
+        initialize(wikiIds, true);
+    }
+
+    private void initialize(Collection<String> wikiIds, boolean listed)
+    {
+        WikiInitializerConfiguration configuration = this.configurationProvider.get();
+        // The lazy initialization already takes care of the sub-wikis on their first access.
+        if (wikiIds.isEmpty() || configuration.isLazyInitialization()) {
+            return;
+        }
+
+        List<WikiDescriptor> descriptors = getWikisToInitialize(wikiIds, listed, configuration);
+        if (descriptors.isEmpty()) {
+            return;
+        }
+
+        this.logger.info("Initializing the [{}] changed sub-wikis ...", descriptors.size());
+
+        Map<String, CompletableFuture<Void>> futures = this.executor.initialize(descriptors,
+            configuration.getParallelism(), configuration.getInitializationTimeout());
+        futures.forEach((wikiId, future) -> future.whenComplete((result, error) -> {
+            if (error != null) {
+                this.logger.error("Failed to initialize the changed sub-wiki [{}]", wikiId, error);
+            }
+        }));
+    }
+
+    private List<WikiDescriptor> getWikisToInitialize(Collection<String> wikiIds, boolean listed,
+        WikiInitializerConfiguration configuration)
+    {
+        WikiDescriptorManager wikiDescriptorManager = this.wikiDescriptorManagerProvider.get();
+        WikiInitializationManager wikiInitializationManager = this.wikiInitializationManagerProvider.get();
+        WikiSelector selector = WikiSelector.fromConfiguration(configuration);
+        // In a cluster, the sub-wikis of the other shards are left to be initialized on their first access.
+        Predicate<String> localShard = this.sharding.getLocalShard();
+        List<WikiDescriptor> descriptors = new ArrayList<>();
+
+        for (String wikiId : wikiIds) {
+            WikiInitializationState state = wikiInitializationManager.getState(wikiId);
+            if (XWiki.DEFAULT_MAIN_WIKI.equals(wikiId) || selector.isExcluded(wikiId) || !localShard.test(wikiId)
+                || state == WikiInitializationState.INITIALIZED || state == WikiInitializationState.INITIALIZING) {
+                continue;
+            }
+
+            try {
+                WikiDescriptor descriptor = wikiDescriptorManager.getById(wikiId);
+                if (descriptor != null && (listed || isSelected(descriptor, configuration, selector))) {
+                    descriptors.add(descriptor);
+                }
+            } catch (WikiManagerException e) {
+                this.logger.warn("Failed to get the descriptor of the changed sub-wiki [{}]: {}", wikiId,
+                    e.getMessage());
+            }
+        }
+
+        return descriptors;
+    }
+
+    private boolean isSelected(WikiDescriptor descriptor, WikiInitializerConfiguration configuration,
+        WikiSelector selector)
+    {
+        return configuration.initializeAllSubWikis()
+            || configuration.getInitializableWikis().stream().anyMatch(wiki -> wiki.getId().equals(descriptor.getId()))
+            || (selector.isSelecting() && selector.matches(descriptor));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+
+import com.xpn.xwiki.web.XWikiServletRequestStub;
+
+/**
+ * Immutable, pre-computed description of the request used to initialize a wiki. The values coming from the
+ * configuration are converted once to the form expected by {@link XWikiServletRequestStub.Builder} so that creating
+ * a new request is cheap.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public final class InitialRequestTemplate
+{
+    private final URL requestURL;
+
+    private final String contextPath;
+
+    private final Map<String, String[]> parameters;
+
+    private final Map<String, List<String>> headers;
+
+    private final Cookie[] cookies;
+
+    private final String remoteAddr;
+
+    /**
+     * @param requestURL the URL of the request
+     * @param contextPath the context path of the request, or {@code null} to use the servlet context path
+     * @param parameters the request parameters
+     * @param headers the request headers
+     * @param cookies the request cookies
+     * @param remoteAddr the remote address of the request
+     */
+    public InitialRequestTemplate(URL requestURL, String contextPath, Map<String, List<String>> parameters,
+        Map<String, List<String>> headers, List<Cookie> cookies, String remoteAddr)
+    {
+        this.requestURL = requestURL;
+        this.contextPath = contextPath;
+
+        Map<String, String[]> parameterArrays = new LinkedHashMap<>();
+        parameters.forEach((name, values) -> parameterArrays.put(name, values.toArray(new String[0])));
+        this.parameters = Collections.unmodifiableMap(parameterArrays);
+
+        Map<String, List<String>> headerLists = new LinkedHashMap<>();
+        headers.forEach((name, values) -> headerLists.put(name, Collections.unmodifiableList(new ArrayList<>(values))));
+        this.headers = Collections.unmodifiableMap(headerLists);
+
+        this.cookies = cookies.stream().map(cookie -> (Cookie) cookie.clone()).toArray(Cookie[]::new);
+        this.remoteAddr = remoteAddr;
+    }
+
+    /**
+     * @param configuration the configuration of the Wiki Initializer
+     * @return the template of the initial request described by the given configuration
+     */
+    public static InitialRequestTemplate fromConfiguration(WikiInitializerConfiguration configuration)
+    {
+        return new InitialRequestTemplate(configuration.getInitialRequestURL(),
+            configuration.getInitialRequestContextPath(), configuration.getInitialRequestParameters(),
+            configuration.getInitialRequestHeaders(), configuration.getInitialRequestCookies(),
+            configuration.getInitialRequestRemoteAddr());
+    }
+
+    /**
+     * @return the URL of the request, or {@code null} if none is configured
+     */
+    public URL getRequestURL()
+    {
+        return this.requestURL;
+    }
+
+    /**
+     * @return the context path of the request, or {@code null} if the servlet context path should be used
+     */
+    public String getContextPath()
+    {
+        return this.contextPath;
+    }
+
+    /**
+     * Create a new request from this template.
+     *
+     * @param defaultContextPath the context path to use when none is configured
+     * @return a new request
+     */
+    public XWikiServletRequestStub createRequest(String defaultContextPath)
+    {
+        return createRequest(this.requestURL, Collections.emptyMap(), defaultContextPath);
+    }
+
+    /**
+     * Create a new request from this template, targeting another URL.
+     *
+     * @param url the URL of the request
+     * @param urlParameters the parameters of the request specific to the URL, overriding the ones of the template
+     * @param defaultContextPath the context path to use when none is configured
+     * @return a new request
+     */
+    public XWikiServletRequestStub createRequest(URL url, Map<String, String[]> urlParameters,
+        String defaultContextPath)
+    {
+        XWikiServletRequestStub.Builder requestBuilder = new XWikiServletRequestStub.Builder();
+        requestBuilder.setRequestURL(url);
+        requestBuilder.setContextPath((this.contextPath != null) ? this.contextPath : defaultContextPath);
+
+        // Requests are allowed to modify their parameters and cookies so we give each request its own copy.
+        Map<String, String[]> requestParameters = new LinkedHashMap<>();
+        this.parameters.forEach((name, values) -> requestParameters.put(name, values.clone()));
+        urlParameters.forEach((name, values) -> requestParameters.put(name, values.clone()));
+        requestBuilder.setRequestParameters(requestParameters);
+
+        Cookie[] requestCookies = new Cookie[this.cookies.length];
+        for (int i = 0; i < this.cookies.length; i++) {
+            requestCookies[i] = (Cookie) this.cookies[i].clone();
+        }
+        requestBuilder.setCookies(requestCookies);
+
+        requestBuilder.setHeaders(this.headers);
+        requestBuilder.setRemoteAddr(this.remoteAddr);
+
+        return requestBuilder.build();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.XWiki;
+
+/**
+ * Enumerate the identifiers of the wikis of the farm page by page, directly from the wiki descriptor documents of
+ * the main wiki, so that the wikis can be processed before all of them are known and without loading their
+ * descriptors.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = PagedWikiEnumerator.class)
+@Singleton
+public class PagedWikiEnumerator
+{
+    private static final String DESCRIPTOR_PREFIX = "XWikiServer";
+
+    private static final String WHERE = " from Document doc, doc.object(XWiki.XWikiServerClass) as descriptor"
+        + " where doc.space = 'XWiki' and doc.name like 'XWikiServer%'"
+        + " and doc.fullName <> 'XWiki.XWikiServerClassTemplate'";
+
+    private static final String LAST_NAME = "lastName";
+
+    /**
+     * Keyset pagination, which unlike an offset doesn't get slower as the enumeration progresses. A descriptor holds
+     * one descriptor object per alias of its wiki, hence the distinct.
+     */
+    private static final String PAGE_QUERY =
+        "select distinct doc.name" + WHERE + " and doc.name > :" + LAST_NAME + " order by doc.name";
+
+    private static final String COUNT_QUERY = "select count(distinct doc.name)" + WHERE;
+
+    @Inject
+    private Provider<QueryManager> queryManagerProvider;
+
+    /**
+     * @return the number of wikis of the farm, including the main wiki
+     * @throws QueryException if the wikis cannot be counted
+     */
+    public long count() throws QueryException
+    {
+        List<Long> results = this.queryManagerProvider.get().createQuery(COUNT_QUERY, Query.XWQL)
+            .setWiki(XWiki.DEFAULT_MAIN_WIKI).execute();
+
+        return results.isEmpty() ? 0 : results.get(0);
+    }
+
+    /**
+     * @param pageSize the maximum number of wiki identifiers in each page
+     * @return an iterator loading the pages of wiki identifiers on demand, failing with an
+     *         {@link IllegalStateException} if a page cannot be loaded
+     */
+    public Iterator<List<String>> getPages(int pageSize)
+    {
+        return new Iterator<List<String>>()
+        {
+            private String lastName = "";
+
+            private List<String> nextPage;
+
+            private boolean done;
+
+            @Override
+            public boolean hasNext()
+            {
+                if (this.nextPage == null && !this.done) {
+                    List<String> names = loadPage(this.lastName, pageSize);
+                    this.done = names.size() < pageSize;
+                    if (names.isEmpty()) {
+                        this.done = true;
+                    } else {
+                        this.lastName = names.get(names.size() - 1);
+                        this.nextPage = toWikiIds(names);
+                    }
+                }
+
+                return this.nextPage != null;
+            }
+
+            @Override
+            public List<String> next()
+            {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                List<String> page = this.nextPage;
+                this.nextPage = null;
+
+                return page;
+            }
+        };
+    }
+
+    private List<String> loadPage(String lastName, int pageSize)
+    {
+        try {
+            return this.queryManagerProvider.get().createQuery(PAGE_QUERY, Query.XWQL)
+                .setWiki(XWiki.DEFAULT_MAIN_WIKI).bindValue(LAST_NAME, lastName).setLimit(pageSize).execute();
+        } catch (QueryException e) {
+            throw new IllegalStateException(String.format("Failed to load the wikis after [%s]", lastName), e);
+        }
+    }
+
+    /**
+     * @param descriptorName the name of a wiki descriptor document
+     * @return the identifier of the wiki described by the document
+     */
+    public static String toWikiId(String descriptorName)
+    {
+        // Same convention as the wiki descriptor manager.
+        return StringUtils.removeStart(descriptorName, DESCRIPTOR_PREFIX).toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> toWikiIds(List<String> descriptorNames)
+    {
+        List<String> wikiIds = new ArrayList<>(descriptorNames.size());
+        for (String descriptorName : descriptorNames) {
+            wikiIds.add(toWikiId(descriptorName));
+        }
+
+        return wikiIds;
+    }
+}
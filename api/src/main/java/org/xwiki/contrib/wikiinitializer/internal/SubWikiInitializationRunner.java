@@ -0,0 +1,304 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationException;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+/**
+ * Initialize a set of sub-wikis like {@link WikiInitializationManager#initialize(Collection, int, Duration)}. The
+ * failure of a wiki never prevents the initialization of the other ones: each wiki is bounded by the configured
+ * timeout and the wikis that failed are retried, after a growing delay, up to the configured number of times. When
+ * the adaptive parallelism is enabled, the number of wikis initialized at the same time is adjusted by an
+ * {@link AdaptiveConcurrencyLimiter}. A wiki is initialized only once the wikis it depends on, among the ones
+ * initialized at the same time, are initialized; see {@link WikiDependencyGraph}.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = SubWikiInitializationRunner.class)
+@Singleton
+public class SubWikiInitializationRunner
+{
+    /**
+     * Allows the caller of {@link #run(Collection, WikiInitializerConfiguration, Monitor)} to follow and control the
+     * initialization. The initializations run in worker threads, but their completions are handed over to the thread
+     * calling {@link #run(Collection, WikiInitializerConfiguration, Monitor)}, which is the only one calling the
+     * methods of this interface: implementations don't need to be thread-safe.
+     *
+     * @version $Id$
+     */
+    public interface Monitor
+    {
+        /**
+         * @return true if the remaining wikis should not be initialized
+         */
+        boolean isCanceled();
+
+        /**
+         * Called when a wiki has been processed, i.e. when it has been initialized or when its last attempt failed.
+         *
+         * @param wikiId the identifier of the processed wiki
+         */
+        void wikiProcessed(String wikiId);
+    }
+
+    private static final long CANCEL_CHECK_INTERVAL = 100L;
+
+    private static final String DEPENDENCY_SEPARATOR = ",";
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private WikiInitializationExecutor executor;
+
+    @Inject
+    private WikiAccessTracker accessTracker;
+
+    @Inject
+    private WikiInitializationHistory history;
+
+    /**
+     * Initialize the given sub-wikis, running at most {@link WikiInitializerConfiguration#getParallelism()}
+     * initializations at the same time. This method blocks until every wiki has been processed or the initialization
+     * has been canceled.
+     *
+     * @param descriptors the descriptors of the sub-wikis to initialize
+     * @param configuration the configuration defining the parallelism, the timeout and the retries
+     * @param monitor the monitor to notify about the progress of the initialization
+     * @return a summary of the initialization
+     */
+    public WikiInitializationSummary run(Collection<WikiDescriptor> descriptors,
+        WikiInitializerConfiguration configuration, Monitor monitor)
+    {
+        return run(Collections.singletonList(descriptors).iterator(), configuration, monitor);
+    }
+
+    /**
+     * Initialize the sub-wikis provided page by page, each page being loaded only once the previous one has been
+     * initialized, so that the initialization starts before every sub-wiki is known. The failed sub-wikis are retried
+     * once every page has been processed. This method blocks until every wiki has been processed or the
+     * initialization has been canceled.
+     *
+     * @param pages the pages of descriptors of the sub-wikis to initialize
+     * @param configuration the configuration defining the parallelism, the timeout and the retries
+     * @param monitor the monitor to notify about the progress of the initialization
+     * @return a summary of the initialization
+     */
+    public WikiInitializationSummary run(Iterator<? extends Collection<WikiDescriptor>> pages,
+        WikiInitializerConfiguration configuration, Monitor monitor)
+    {
+        WikiInitializationSummary summary = new WikiInitializationSummary();
+
+        // The limiter is shared by the pages and the retries so that they benefit from what has been learned so far.
+        AdaptiveConcurrencyLimiter limiter = configuration.isAdaptiveParallelism()
+            ? new AdaptiveConcurrencyLimiter(configuration.getParallelism(), this.accessTracker::getActiveRequests,
+                this.history::getLastDuration)
+            : null;
+
+        List<WikiDescriptor> pending = new ArrayList<>();
+        boolean noRetry = configuration.getMaxRetries() <= 0;
+        while (pages.hasNext() && !monitor.isCanceled()) {
+            pending.addAll(runAttempt(new ArrayList<>(pages.next()), configuration, limiter, noRetry, monitor,
+                summary));
+        }
+
+        long retryDelay = configuration.getRetryDelay().toMillis();
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            this.logger.warn("Retrying the initialization of [{}] sub-wikis in [{}] ms", pending.size(), retryDelay);
+            if (!waitBeforeRetry(retryDelay, monitor)) {
+                pending.forEach(descriptor -> summary.addSkippedWiki(descriptor.getId()));
+                break;
+            }
+            retryDelay *= 2;
+
+            boolean lastAttempt = attempt >= configuration.getMaxRetries();
+            pending = runAttempt(pending, configuration, limiter, lastAttempt, monitor, summary);
+        }
+
+        summary.end();
+
+        return summary;
+    }
+
+    /**
+     * @return the wikis to retry
+     */
+    private List<WikiDescriptor> runAttempt(List<WikiDescriptor> descriptors,
+        WikiInitializerConfiguration configuration, AdaptiveConcurrencyLimiter limiter, boolean lastAttempt,
+        Monitor monitor, WikiInitializationSummary summary)
+    {
+        Map<String, WikiDescriptor> descriptorsById = new LinkedHashMap<>();
+        descriptors.forEach(descriptor -> descriptorsById.put(descriptor.getId(), descriptor));
+
+        WikiDependencyGraph graph = new WikiDependencyGraph(descriptors, getDependencyResolver(configuration));
+        if (!graph.getCyclicWikis().isEmpty()) {
+            this.logger.error("The sub-wikis {} are part of a cycle of dependencies or depend on one, they won't be"
+                + " initialized", graph.getCyclicWikis());
+            for (String wikiId : graph.getCyclicWikis()) {
+                summary.addFailedWiki(wikiId, new WikiInitializationException(
+                    String.format("Sub-wiki [%s] is part of a cycle of dependencies or depends on one", wikiId)));
+                monitor.wikiProcessed(wikiId);
+            }
+        }
+        if (!graph.getDependencies().isEmpty()) {
+            recordCriticalPath(graph, summary);
+        }
+
+        Map<String, CompletableFuture<Void>> futures = this.executor.initialize(graph.getOrder(),
+            configuration.getParallelism(), configuration.getInitializationTimeout(), limiter,
+            graph.getDependencies());
+
+        // Completions are handed over to the calling thread, which is the only one allowed to notify the monitor.
+        BlockingQueue<Map.Entry<String, Throwable>> completions = new LinkedBlockingQueue<>();
+        futures.forEach((wikiId, future) -> future.whenComplete(
+            (result, error) -> completions.add(new AbstractMap.SimpleImmutableEntry<>(wikiId, unwrap(error)))));
+
+        List<WikiDescriptor> toRetry = new ArrayList<>();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Map.Entry<String, Throwable> completion = completions.take();
+                String wikiId = completion.getKey();
+                Throwable error = completion.getValue();
+
+                if (error == null) {
+                    summary.addInitializedWiki(wikiId);
+                } else if (error instanceof CancellationException) {
+                    summary.addSkippedWiki(wikiId);
+                    continue;
+                } else if (lastAttempt) {
+                    this.logger.error("Failed to initialize sub-wiki [{}]", wikiId, error);
+                    summary.addFailedWiki(wikiId, error);
+                } else {
+                    this.logger.warn("Failed to initialize sub-wiki [{}], it will be retried: {}", wikiId,
+                        error.getMessage());
+                    toRetry.add(descriptorsById.get(wikiId));
+                    continue;
+                }
+
+                if (monitor.isCanceled()) {
+                    futures.values().forEach(future -> future.cancel(false));
+                } else {
+                    monitor.wikiProcessed(wikiId);
+                }
+            }
+        } catch (InterruptedException e) {
+            this.logger.warn("Interrupted while waiting for the initialization of sub-wikis");
+            futures.values().forEach(future -> future.cancel(false));
+            futures.forEach((wikiId, future) -> {
+                if (future.isCancelled()) {
+                    summary.addSkippedWiki(wikiId);
+                }
+            });
+            Thread.currentThread().interrupt();
+        }
+
+        return toRetry;
+    }
+
+    private Function<WikiDescriptor, Collection<String>> getDependencyResolver(
+        WikiInitializerConfiguration configuration)
+    {
+        Map<String, List<String>> configuredDependencies = configuration.getWikiDependencies();
+        String dependenciesProperty = configuration.getWikiDependenciesProperty();
+
+        return descriptor -> {
+            Set<String> dependencies =
+                new LinkedHashSet<>(configuredDependencies.getOrDefault(descriptor.getId(), Collections.emptyList()));
+            if (dependenciesProperty != null) {
+                Object value = WikiSelector.getProperty(descriptor, dependenciesProperty);
+                if (value instanceof Collection) {
+                    ((Collection<?>) value).forEach(dependency -> dependencies.add(Objects.toString(dependency)));
+                } else if (value != null) {
+                    Arrays.stream(StringUtils.split(value.toString(), DEPENDENCY_SEPARATOR)).map(String::trim)
+                        .filter(StringUtils::isNotEmpty).forEach(dependencies::add);
+                }
+            }
+
+            return dependencies;
+        };
+    }
+
+    private void recordCriticalPath(WikiDependencyGraph graph, WikiInitializationSummary summary)
+    {
+        // The sub-wikis never initialized yet count for one millisecond, so that the longest chain wins.
+        ToLongFunction<String> expectedDuration = wikiId -> Math.max(1L, this.history.getLastDuration(wikiId));
+        List<String> criticalPath = graph.getCriticalPath(expectedDuration);
+        long criticalPathDuration = criticalPath.stream().mapToLong(expectedDuration).sum();
+
+        this.logger.info("The critical path of the sub-wikis dependencies is {}, expected to take [{}] ms",
+            criticalPath, criticalPathDuration);
+        summary.setCriticalPath(criticalPath, criticalPathDuration);
+    }
+
+    private boolean waitBeforeRetry(long delay, Monitor monitor)
+    {
+        long end = System.currentTimeMillis() + delay;
+
+        try {
+            for (long remaining = delay; remaining > 0; remaining = end - System.currentTimeMillis()) {
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+                Thread.sleep(Math.min(remaining, CANCEL_CHECK_INTERVAL));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return !monitor.isCanceled();
+    }
+
+    private Throwable unwrap(Throwable error)
+    {
+        return (error instanceof CompletionException) ? error.getCause() : error;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.bridge.event.ActionExecutedEvent;
+import org.xwiki.bridge.event.ActionExecutingEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationState;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Listener reporting the requests made to each wiki to the {@link WikiAccessTracker} and, when the lazy
+ * initialization is enabled, initializing the sub-wikis on their first access. The requests in progress are also
+ * counted so that the initialization of the sub-wikis can back off when the server is busy.
+ * <p>
+ * The initialization started by the first access of a sub-wiki goes through the {@link WikiInitializationExecutor},
+ * bounded by the configured timeout: the request doesn't wait for it (nor for the warm-up of the wiki) and is handled
+ * by XWiki as usual. A failed initialization is attempted again by a later access, once the retry delay (doubled
+ * after each attempt) has elapsed, up to the configured number of retries.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component
+@Singleton
+@Named(WikiAccessListener.LISTENER_NAME)
+public class WikiAccessListener extends AbstractEventListener
+{
+    /**
+     * The listener name.
+     */
+    public static final String LISTENER_NAME = "WikiAccessListener";
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    private Provider<WikiAccessTracker> accessTrackerProvider;
+
+    @Inject
+    private Provider<WikiInitializationManager> wikiInitializationManagerProvider;
+
+    @Inject
+    private Provider<WikiInitializationExecutor> executorProvider;
+
+    @Inject
+    private Logger logger;
+
+    private final Map<String, LazyInitialization> lazyInitializations = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new {@link WikiAccessListener}.
+     */
+    public WikiAccessListener()
+    {
+        super(LISTENER_NAME, new ActionExecutingEvent(), new ActionExecutedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof ActionExecutedEvent) {
+            accessTrackerProvider.get().requestEnded();
+            return;
+        }
+
+        accessTrackerProvider.get().requestStarted();
+
+        String wikiId = (data instanceof XWikiContext) ? ((XWikiContext) data).getWikiId() : null;
+
+        if (wikiId != null) {
+            WikiInitializerConfiguration configuration = configurationProvider.get();
+
+            if (configuration.isAccessTrackingEnabled()) {
+                accessTrackerProvider.get().recordAccess(wikiId);
+            }
+
+            if (!XWiki.DEFAULT_MAIN_WIKI.equals(wikiId) && configuration.isLazyInitialization()) {
+                initializeOnFirstAccess(wikiId);
+            }
+        }
+    }
+
+    private void initializeOnFirstAccess(String wikiId)
+    {
+        WikiInitializationState state = wikiInitializationManagerProvider.get().getState(wikiId);
+        // The wiki may also be initialized by the background prefetch.
+        if (state != WikiInitializationState.NOT_INITIALIZED && state != WikiInitializationState.FAILED) {
+            return;
+        }
+
+        WikiInitializerConfiguration configuration = configurationProvider.get();
+        LazyInitialization previous = lazyInitializations.get(wikiId);
+        if (previous != null && !previous.canRetry(configuration.getMaxRetries())) {
+            return;
+        }
+
+        // Only one of the concurrent first accesses starts the initialization.
+        LazyInitialization initialization = new LazyInitialization((previous != null) ? previous.attempts + 1 : 1);
+        boolean started = (previous != null) ? lazyInitializations.replace(wikiId, previous, initialization)
+            : lazyInitializations.putIfAbsent(wikiId, initialization) == null;
+        if (!started) {
+            return;
+        }
+
+        CompletableFuture<Void> future = executorProvider.get().initialize(
+            Collections.singletonList(new WikiDescriptor(wikiId, wikiId)), 1, configuration.getInitializationTimeout())
+            .get(wikiId);
+        future.whenComplete((result, error) -> {
+            if (error == null || error instanceof CancellationException) {
+                lazyInitializations.remove(wikiId, initialization);
+            } else {
+                Throwable cause = (error instanceof CompletionException) ? error.getCause() : error;
+                long retryDelay = configuration.getRetryDelay().toMillis() << (initialization.attempts - 1);
+                logger.error("Failed to initialize wiki [{}] on first access (attempt [{}])", wikiId,
+                    initialization.attempts, cause);
+                initialization.fail(System.currentTimeMillis() + retryDelay);
+            }
+        });
+    }
+
+    /**
+     * The attempts to initialize a sub-wiki on its access.
+     */
+    private static final class LazyInitialization
+    {
+        private final int attempts;
+
+        private volatile boolean running = true;
+
+        private volatile long nextAttemptTime;
+
+        LazyInitialization(int attempts)
+        {
+            this.attempts = attempts;
+        }
+
+        boolean canRetry(int maxRetries)
+        {
+            return !this.running && this.attempts <= maxRetries && System.currentTimeMillis() >= this.nextAttemptTime;
+        }
+
+        void fail(long retryTime)
+        {
+            this.nextAttemptTime = retryTime;
+            this.running = false;
+        }
+    }
+}
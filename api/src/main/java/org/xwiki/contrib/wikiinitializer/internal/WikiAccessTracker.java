@@ -0,0 +1,226 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+
+/**
+ * Count the requests made to each wiki during the normal operation of the server (as reported by
+ * {@link WikiAccessListener}), so that the most used wikis can be initialized first after a restart. The counters
+ * are regularly saved in the permanent directory.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiAccessTracker.class)
+@Singleton
+public class WikiAccessTracker implements Initializable, Disposable
+{
+    private static final String STORE_NAME = "accesses";
+
+    private static final long SAVE_INTERVAL_MINUTES = 5;
+
+    /**
+     * The time after which a request is not considered active anymore, in milliseconds.
+     */
+    private static final long MAX_REQUEST_DURATION = 60000L;
+
+    @Inject
+    private WikiInitializerStore store;
+
+    private final Map<String, LongAdder> accessCounts = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService saveScheduler;
+
+    private volatile long lastAccessTime;
+
+    private final Map<String, Long> wikiLastAccessTimes = new ConcurrentHashMap<>();
+
+    /**
+     * The start time of the request being handled by each thread. A thread handles a single request at a time, so a
+     * request whose end is never notified (e.g. canceled) is replaced by the next request of its thread, and it's
+     * forgotten anyway when its thread dies or after {@link #MAX_REQUEST_DURATION}.
+     */
+    private final Map<Thread, Long> activeRequests = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Boolean> untracked = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    @Override
+    public void initialize()
+    {
+        Properties properties = this.store.load(STORE_NAME);
+        for (String wikiId : properties.stringPropertyNames()) {
+            getCounter(wikiId).add(NumberUtils.toLong(properties.getProperty(wikiId)));
+        }
+
+        this.saveScheduler = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("Wiki Initializer Access Tracker").daemon(true).build());
+        this.saveScheduler.scheduleWithFixedDelay(this::save, SAVE_INTERVAL_MINUTES, SAVE_INTERVAL_MINUTES,
+            TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.saveScheduler.shutdownNow();
+        save();
+    }
+
+    /**
+     * Record an access to a wiki.
+     *
+     * @param wikiId the identifier of the accessed wiki
+     */
+    public void recordAccess(String wikiId)
+    {
+        if (this.untracked.get()) {
+            return;
+        }
+
+        getCounter(wikiId).increment();
+        this.wikiLastAccessTimes.put(wikiId, System.currentTimeMillis());
+    }
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return the time of the last recorded access to the given wiki since the server started, in milliseconds, or 0
+     *         if none has been recorded
+     */
+    public long getLastAccessTime(String wikiId)
+    {
+        return this.wikiLastAccessTimes.getOrDefault(wikiId, 0L);
+    }
+
+    /**
+     * Record the start of a request on the current thread.
+     */
+    public void requestStarted()
+    {
+        if (!this.untracked.get()) {
+            // Recorded even when the accesses are not tracked, to know when the server is idle.
+            this.lastAccessTime = System.currentTimeMillis();
+            this.activeRequests.put(Thread.currentThread(), this.lastAccessTime);
+        }
+    }
+
+    /**
+     * Record the end of the request running on the current thread.
+     */
+    public void requestEnded()
+    {
+        this.activeRequests.remove(Thread.currentThread());
+    }
+
+    /**
+     * @return the number of requests currently being handled
+     */
+    public int getActiveRequests()
+    {
+        long now = System.currentTimeMillis();
+        this.activeRequests.entrySet().removeIf(
+            entry -> !entry.getKey().isAlive() || now - entry.getValue() > MAX_REQUEST_DURATION);
+
+        return this.activeRequests.size();
+    }
+
+    /**
+     * Run the given task without tracking the accesses and the requests it makes from the current thread, e.g. for
+     * the requests made by the Wiki Initializer itself, which are not representative of the usage of the wikis.
+     *
+     * @param <T> the type of the result of the task
+     * @param task the task to run
+     * @return the result of the task
+     * @throws Exception if the task fails
+     */
+    public <T> T runUntracked(Callable<T> task) throws Exception
+    {
+        boolean previous = this.untracked.get();
+        this.untracked.set(Boolean.TRUE);
+        try {
+            return task.call();
+        } finally {
+            if (previous) {
+                this.untracked.set(Boolean.TRUE);
+            } else {
+                this.untracked.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the start time of the last request made to any wiki, in milliseconds, or 0 if none has been recorded
+     */
+    public long getLastAccessTime()
+    {
+        return this.lastAccessTime;
+    }
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return the number of recorded accesses to the given wiki
+     */
+    public long getAccessCount(String wikiId)
+    {
+        LongAdder counter = this.accessCounts.get(wikiId);
+
+        return (counter != null) ? counter.sum() : 0;
+    }
+
+    /**
+     * @return the number of recorded accesses, indexed by wiki identifier
+     */
+    public Map<String, Long> getAccessCounts()
+    {
+        Map<String, Long> counts = new ConcurrentHashMap<>();
+        this.accessCounts.forEach((wikiId, counter) -> counts.put(wikiId, counter.sum()));
+
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private LongAdder getCounter(String wikiId)
+    {
+        return this.accessCounts.computeIfAbsent(wikiId, k -> new LongAdder());
+    }
+
+    private void save()
+    {
+        Properties properties = new Properties();
+        this.accessCounts.forEach((wikiId, counter) -> properties.setProperty(wikiId, String.valueOf(counter.sum())));
+
+        this.store.save(STORE_NAME, properties, "Number of requests per wiki");
+    }
+}
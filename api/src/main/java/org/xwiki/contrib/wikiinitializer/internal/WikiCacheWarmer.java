@@ -0,0 +1,228 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.SpaceReferenceResolver;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.store.XWikiCacheStore;
+import com.xpn.xwiki.store.XWikiStoreInterface;
+
+/**
+ * Load the documents needed by the first requests made to a wiki (default page, preferences, skin and configured
+ * documents) into the document cache, so that the first visitors of a freshly initialized wiki don't pay for it, and
+ * remove them from the cache when the wiki is idle. The warmed up documents are remembered so that removing them
+ * doesn't have to load the preferences of the wiki again.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiCacheWarmer.class)
+@Singleton
+public class WikiCacheWarmer
+{
+    private static final String XWIKI_SPACE = "XWiki";
+
+    private static final String PREFERENCES_PAGE = "XWikiPreferences";
+
+    private static final String SKIN_CONTEXT_KEY = "skin";
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @Inject
+    @Named("current")
+    private SpaceReferenceResolver<String> spaceReferenceResolver;
+
+    private final Map<String, Set<DocumentReference>> warmedUpDocuments = new ConcurrentHashMap<>();
+
+    private Semaphore permits;
+
+    private int permitCount;
+
+    /**
+     * Warm up the caches of the given wiki. Failures are logged and don't prevent the other documents from being
+     * loaded. Nothing is warmed up while XWiki is not initialized.
+     *
+     * @param wikiId the identifier of the wiki to warm up
+     * @param context the context to use, whose current wiki is restored afterwards
+     * @throws InterruptedException if the thread is interrupted while waiting for another warm up to finish
+     */
+    public void warmUp(String wikiId, XWikiContext context) throws InterruptedException
+    {
+        if (context.getWiki() == null) {
+            this.logger.warn("Skipping the warm up of wiki [{}] since XWiki is not initialized", wikiId);
+            return;
+        }
+
+        WikiInitializerConfiguration configuration = this.configurationProvider.get();
+        Semaphore semaphore = getPermits(configuration.getWarmUpConcurrency());
+        semaphore.acquire();
+
+        String previousWikiId = context.getWikiId();
+        Object previousSkin = context.get(SKIN_CONTEXT_KEY);
+        try {
+            context.setWikiId(wikiId);
+            // The skin is cached in the context and may come from another wiki.
+            context.remove(SKIN_CONTEXT_KEY);
+
+            int loaded = 0;
+            Set<DocumentReference> references = getDocumentReferences(wikiId, configuration, context);
+            for (DocumentReference reference : references) {
+                if (loadDocument(reference, context)) {
+                    loaded++;
+                }
+            }
+            // Missing documents are remembered too since their absence is cached as well.
+            this.warmedUpDocuments.put(wikiId, Collections.unmodifiableSet(references));
+
+            this.logger.debug("Loaded [{}] documents while warming up wiki [{}]", loaded, wikiId);
+        } finally {
+            restoreContext(previousWikiId, previousSkin, context);
+            semaphore.release();
+        }
+    }
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return {@code true} if the documents of the given wiki have been warmed up and not evicted since
+     */
+    public boolean isWarmedUp(String wikiId)
+    {
+        return this.warmedUpDocuments.containsKey(wikiId);
+    }
+
+    /**
+     * Remove the documents loaded by the last {@link #warmUp(String, XWikiContext)} of the given wiki from the
+     * document cache. The wiki itself is left untouched: its documents are simply loaded again when needed.
+     *
+     * @param wikiId the identifier of the wiki to evict
+     * @param context the context to use
+     * @return {@code true} if documents of the given wiki have been removed from the cache
+     */
+    public boolean evict(String wikiId, XWikiContext context)
+    {
+        Set<DocumentReference> references = this.warmedUpDocuments.remove(wikiId);
+        XWikiStoreInterface store = (context.getWiki() != null) ? context.getWiki().getStore() : null;
+        if (references == null || !(store instanceof XWikiCacheStore)) {
+            return false;
+        }
+
+        XWikiCacheStore cacheStore = (XWikiCacheStore) store;
+        for (DocumentReference reference : references) {
+            String key = cacheStore.getKey(new XWikiDocument(reference), context);
+            cacheStore.getCache().remove(key);
+            cacheStore.getPageExistCache().remove(key);
+        }
+
+        return true;
+    }
+
+    private void restoreContext(String previousWikiId, Object previousSkin, XWikiContext context)
+    {
+        context.setWikiId(previousWikiId);
+        if (previousSkin != null) {
+            context.put(SKIN_CONTEXT_KEY, previousSkin);
+        } else {
+            context.remove(SKIN_CONTEXT_KEY);
+        }
+    }
+
+    private Set<DocumentReference> getDocumentReferences(String wikiId, WikiInitializerConfiguration configuration,
+        XWikiContext context)
+    {
+        XWiki xwiki = context.getWiki();
+        Set<DocumentReference> references = new LinkedHashSet<>();
+
+        references.add(new DocumentReference(wikiId, xwiki.getDefaultSpace(context), xwiki.getDefaultPage(context)));
+        references.add(new DocumentReference(wikiId, XWIKI_SPACE, PREFERENCES_PAGE));
+
+        try {
+            String skin = xwiki.getSkin(context);
+            if (StringUtils.contains(skin, '.')) {
+                references.add(this.documentReferenceResolver.resolve(skin));
+            }
+        } catch (Exception e) {
+            this.logger.warn("Failed to resolve the skin of wiki [{}]: {}", wikiId, e.getMessage());
+        }
+
+        for (String space : configuration.getWarmUpSpaces()) {
+            SpaceReference spaceReference = this.spaceReferenceResolver.resolve(space);
+            references.add(new DocumentReference(xwiki.getDefaultPage(context), spaceReference));
+        }
+        for (String document : configuration.getWarmUpDocuments()) {
+            references.add(this.documentReferenceResolver.resolve(document));
+        }
+
+        // References targeting explicitly another wiki are loaded when warming up that wiki.
+        references.removeIf(reference -> !wikiId.equals(reference.getWikiReference().getName()));
+
+        return references;
+    }
+
+    private boolean loadDocument(DocumentReference reference, XWikiContext context)
+    {
+        try {
+            // Loading the document is enough to put it in the document cache.
+            return !context.getWiki().getDocument(reference, context).isNew();
+        } catch (Exception e) {
+            this.logger.warn("Failed to load document [{}] while warming up its wiki: {}", reference, e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized Semaphore getPermits(int concurrency)
+    {
+        if (this.permits == null || this.permitCount != concurrency) {
+            this.permits = new Semaphore(concurrency);
+            this.permitCount = concurrency;
+        }
+
+        return this.permits;
+    }
+}
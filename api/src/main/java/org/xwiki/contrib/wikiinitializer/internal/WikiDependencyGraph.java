@@ -0,0 +1,180 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+/**
+ * Immutable graph of the dependencies between sub-wikis initialized together, used to initialize a sub-wiki only
+ * once the sub-wikis it depends on are initialized. The dependencies on sub-wikis that are not part of the graph are
+ * ignored. The cycles are detected when the graph is built: the sub-wikis involved in a cycle, or depending on one,
+ * are left out of the initialization order.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public final class WikiDependencyGraph
+{
+    private final List<WikiDescriptor> order;
+
+    private final Map<String, Set<String>> dependencies;
+
+    private final List<String> cyclicWikis;
+
+    /**
+     * @param descriptors the descriptors of the sub-wikis to initialize, in their preferred order
+     * @param dependencyResolver returns the identifiers of the sub-wikis a sub-wiki depends on
+     */
+    public WikiDependencyGraph(List<WikiDescriptor> descriptors,
+        Function<WikiDescriptor, Collection<String>> dependencyResolver)
+    {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < descriptors.size(); i++) {
+            indexes.putIfAbsent(descriptors.get(i).getId(), i);
+        }
+
+        Map<String, Set<String>> graphDependencies = new LinkedHashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (WikiDescriptor descriptor : descriptors) {
+            Set<String> wikiDependencies = new LinkedHashSet<>();
+            for (String dependency : dependencyResolver.apply(descriptor)) {
+                if (indexes.containsKey(dependency)) {
+                    wikiDependencies.add(dependency);
+                    dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(descriptor.getId());
+                }
+            }
+            if (!wikiDependencies.isEmpty()) {
+                graphDependencies.put(descriptor.getId(), Collections.unmodifiableSet(wikiDependencies));
+            }
+        }
+
+        // Kahn's algorithm, taking the sub-wikis whose dependencies are satisfied in their preferred order.
+        Map<String, Integer> remainingDependencies = new HashMap<>();
+        graphDependencies.forEach((wikiId, wikiDependencies) -> remainingDependencies.put(wikiId,
+            wikiDependencies.size()));
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        indexes.forEach((wikiId, index) -> {
+            if (!remainingDependencies.containsKey(wikiId)) {
+                ready.add(index);
+            }
+        });
+
+        List<WikiDescriptor> sortedDescriptors = new ArrayList<>(descriptors.size());
+        while (!ready.isEmpty()) {
+            WikiDescriptor descriptor = descriptors.get(ready.poll());
+            sortedDescriptors.add(descriptor);
+            for (String dependent : dependents.getOrDefault(descriptor.getId(), Collections.emptyList())) {
+                if (remainingDependencies.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(indexes.get(dependent));
+                }
+            }
+        }
+
+        // What could not be sorted is part of a cycle or depends on one.
+        List<String> unsortedWikis = new ArrayList<>();
+        remainingDependencies.forEach((wikiId, remaining) -> {
+            if (remaining > 0) {
+                unsortedWikis.add(wikiId);
+            }
+        });
+        unsortedWikis.sort((a, b) -> Integer.compare(indexes.get(a), indexes.get(b)));
+
+        this.order = Collections.unmodifiableList(sortedDescriptors);
+        this.dependencies = Collections.unmodifiableMap(graphDependencies);
+        this.cyclicWikis = Collections.unmodifiableList(unsortedWikis);
+    }
+
+    /**
+     * @return the descriptors of the sub-wikis to initialize, each one coming after the sub-wikis it depends on, the
+     *         sub-wikis involved in a cycle excluded
+     */
+    public List<WikiDescriptor> getOrder()
+    {
+        return this.order;
+    }
+
+    /**
+     * @return the identifiers of the sub-wikis that each sub-wiki of the graph depends on, indexed by sub-wiki
+     *         identifier
+     */
+    public Map<String, Set<String>> getDependencies()
+    {
+        return this.dependencies;
+    }
+
+    /**
+     * @return the identifiers of the sub-wikis that are part of a cycle of dependencies or depend on one
+     */
+    public List<String> getCyclicWikis()
+    {
+        return this.cyclicWikis;
+    }
+
+    /**
+     * Compute the critical path, i.e. the chain of dependencies with the longest total initialization time, which is
+     * the minimum time needed to initialize the sub-wikis whatever the parallelism.
+     *
+     * @param duration the expected initialization time of a sub-wiki
+     * @return the identifiers of the sub-wikis on the critical path, the first one having no dependency
+     */
+    public List<String> getCriticalPath(ToLongFunction<String> duration)
+    {
+        Map<String, Long> finishTimes = new HashMap<>();
+        Map<String, String> predecessors = new HashMap<>();
+        String last = null;
+
+        // Every sub-wiki comes after its dependencies in the initialization order.
+        for (WikiDescriptor descriptor : this.order) {
+            String wikiId = descriptor.getId();
+            long startTime = 0;
+            for (String dependency : this.dependencies.getOrDefault(wikiId, Collections.emptySet())) {
+                if (finishTimes.get(dependency) > startTime) {
+                    startTime = finishTimes.get(dependency);
+                    predecessors.put(wikiId, dependency);
+                }
+            }
+            finishTimes.put(wikiId, startTime + duration.applyAsLong(wikiId));
+
+            if (last == null || finishTimes.get(wikiId) > finishTimes.get(last)) {
+                last = wikiId;
+            }
+        }
+
+        List<String> criticalPath = new ArrayList<>();
+        for (String wikiId = last; wikiId != null; wikiId = predecessors.get(wikiId)) {
+            criticalPath.add(0, wikiId);
+        }
+
+        return criticalPath;
+    }
+}
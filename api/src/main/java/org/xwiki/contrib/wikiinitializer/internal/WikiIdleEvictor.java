@@ -0,0 +1,189 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Periodically evict the initialized sub-wikis that have not been accessed for the configured idle time: their warmed
+ * up documents are removed from the document cache to leave room for the documents of the wikis in use. The evicted
+ * sub-wikis stay initialized, so their next access doesn't have to initialize them again. The readiness and priority
+ * sub-wikis are never evicted.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiIdleEvictor.class)
+@Singleton
+public class WikiIdleEvictor implements Disposable
+{
+    private static final String THREAD_NAME = "Wiki Initializer Idle Eviction";
+
+    private static final long CHECK_PERIOD_MINUTES = 1L;
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    private Provider<WikiDescriptorManager> wikiDescriptorManagerProvider;
+
+    @Inject
+    private Provider<WikiInitializationManager> wikiInitializationManagerProvider;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private WikiAccessTracker accessTracker;
+
+    @Inject
+    private WikiCacheWarmer cacheWarmer;
+
+    /**
+     * The time at which each initialized sub-wiki was first seen by the evictor, used as its last access time when no
+     * access has been recorded since the server started.
+     */
+    private final Map<String, Long> firstSeenTimes = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @Override
+    public synchronized void dispose()
+    {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * @param configuration the configuration of the Wiki Initializer
+     * @return true if the idle sub-wikis should be evicted
+     */
+    public boolean isEnabled(WikiInitializerConfiguration configuration)
+    {
+        // The idle time of the sub-wikis is only known when their accesses are tracked.
+        return configuration.getEvictionIdleTime() != null && configuration.isAccessTrackingEnabled();
+    }
+
+    /**
+     * Start the periodic eviction of the idle sub-wikis, if enabled.
+     */
+    public synchronized void start()
+    {
+        if (this.scheduler == null && isEnabled(this.configurationProvider.get())) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern(THREAD_NAME).daemon(true).build());
+            this.scheduler.scheduleWithFixedDelay(this::evictIdleWikis, CHECK_PERIOD_MINUTES, CHECK_PERIOD_MINUTES,
+                TimeUnit.MINUTES);
+        }
+    }
+
+    private void evictIdleWikis()
+    {
+        WikiInitializerConfiguration configuration = this.configurationProvider.get();
+        if (!isEnabled(configuration)) {
+            return;
+        }
+
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+        } catch (ExecutionContextException e) {
+            this.logger.warn("Failed to initialize the execution context of the idle sub-wikis eviction: {}",
+                e.getMessage());
+            return;
+        }
+
+        try {
+            evictIdleWikis(configuration, this.contextProvider.get());
+        } catch (WikiManagerException e) {
+            this.logger.warn("Failed to get the sub-wikis to evict: {}", e.getMessage());
+        } catch (Exception e) {
+            // Don't let an unexpected error cancel the next checks.
+            this.logger.error("Failed to evict the idle sub-wikis", e);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    private void evictIdleWikis(WikiInitializerConfiguration configuration, XWikiContext context)
+        throws WikiManagerException
+    {
+        WikiDescriptorManager wikiDescriptorManager = this.wikiDescriptorManagerProvider.get();
+        WikiInitializationManager wikiInitializationManager = this.wikiInitializationManagerProvider.get();
+        Duration idleTime = configuration.getEvictionIdleTime();
+        // The node must stay ready, and the priority sub-wikis are expected to be served at full speed at any time.
+        Set<String> retainedWikis = new HashSet<>(configuration.getReadinessWikis());
+        retainedWikis.addAll(configuration.getPriorityWikis());
+        retainedWikis.add(wikiDescriptorManager.getMainWikiId());
+        long now = System.currentTimeMillis();
+
+        for (String wikiId : wikiDescriptorManager.getAllIds()) {
+            if (retainedWikis.contains(wikiId) || !wikiInitializationManager.isInitialized(wikiId)
+                || !this.cacheWarmer.isWarmedUp(wikiId)) {
+                this.firstSeenTimes.remove(wikiId);
+                continue;
+            }
+
+            long firstSeenTime = this.firstSeenTimes.computeIfAbsent(wikiId, id -> now);
+            long lastAccessTime = Math.max(firstSeenTime, this.accessTracker.getLastAccessTime(wikiId));
+            if (now - lastAccessTime >= idleTime.toMillis() && this.cacheWarmer.evict(wikiId, context)) {
+                this.firstSeenTimes.remove(wikiId);
+
+                this.logger.info("Evicted sub-wiki [{}] after [{}] s without access", wikiId,
+                    TimeUnit.MILLISECONDS.toSeconds(now - lastAccessTime));
+            }
+        }
+    }
+}
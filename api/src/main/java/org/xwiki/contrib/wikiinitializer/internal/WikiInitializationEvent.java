@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event covering the initialization of a wiki, so that a recording taken while the server starts
+ * shows when each wiki was initialized next to the GC and JDBC activity. The phases of the initialization are recorded
+ * as {@link WikiInitializationPhaseEvent}s on the same thread.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Name(WikiInitializationEvent.NAME)
+@Label("Wiki Initialization")
+@Category({ "XWiki", "Wiki Initializer" })
+@Description("The initialization of a wiki")
+public class WikiInitializationEvent extends Event
+{
+    /**
+     * The name of the event.
+     */
+    public static final String NAME = "org.xwiki.contrib.wikiinitializer.WikiInitialization";
+
+    @Label("Wiki")
+    private final String wikiId;
+
+    @Label("Success")
+    private boolean success;
+
+    @Label("Failure")
+    private String failure;
+
+    /**
+     * @param wikiId the identifier of the wiki being initialized
+     */
+    public WikiInitializationEvent(String wikiId)
+    {
+        this.wikiId = wikiId;
+    }
+
+    /**
+     * End the event and commit it if enabled.
+     *
+     * @param error the error that made the initialization fail, or {@code null} if it succeeded
+     */
+    public void complete(Throwable error)
+    {
+        end();
+        if (shouldCommit()) {
+            this.success = error == null;
+            this.failure = (error != null) ? error.toString() : null;
+            commit();
+        }
+    }
+
+    /**
+     * @return the identifier of the wiki being initialized
+     */
+    public String getWikiId()
+    {
+        return this.wikiId;
+    }
+}
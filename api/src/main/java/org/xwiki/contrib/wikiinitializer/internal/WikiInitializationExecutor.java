@@ -0,0 +1,598 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationException;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Asynchronously initialize batches of wikis on a bounded pool of worker threads, or on one virtual thread per wiki
+ * when enabled and supported by the JVM, a semaphore then bounding the number of wikis initialized at the same time.
+ * Each worker runs with its own execution context and its own {@link XWikiContext}, cloned from the context of the
+ * thread submitting the batch. An initialization that times out is abandoned: its worker is interrupted and
+ * replaced, so that an initialization ignoring the interruption doesn't hold up the rest of the batch. The executor
+ * can be stopped, e.g. when the application stops, in which case no new initialization is started.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializationExecutor.class)
+@Singleton
+public class WikiInitializationExecutor implements Initializable, Disposable
+{
+    private static final String THREAD_NAME_PATTERN = "Wiki Initializer #%d";
+
+    private static final String VIRTUAL_THREAD_NAME_PREFIX = "Wiki Initializer Virtual #";
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    private Provider<WikiInitializationManager> wikiInitializationManagerProvider;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    private ScheduledExecutorService timeoutScheduler;
+
+    private ThreadFactory virtualThreadFactory;
+
+    private boolean virtualThreadsResolved;
+
+    private final Object stopLock = new Object();
+
+    private boolean stopping;
+
+    private final Set<CompletableFuture<Void>> pendingInitializations = ConcurrentHashMap.newKeySet();
+
+    private final Set<CompletableFuture<Void>> runningInitializations = new HashSet<>();
+
+    private final Set<ExecutorService> workerPools = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void initialize()
+    {
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("Wiki Initializer Timeout").daemon(true).build());
+    }
+
+    @Override
+    public void dispose()
+    {
+        stop();
+        interrupt();
+        this.timeoutScheduler.shutdownNow();
+    }
+
+    /**
+     * Stop starting the initialization of wikis, e.g. because the application is stopping: the wikis waiting for a
+     * worker are canceled, the initializations in progress go on and the next batches are canceled right away.
+     */
+    public void stop()
+    {
+        synchronized (this.stopLock) {
+            this.stopping = true;
+            this.pendingInitializations.stream().filter(future -> !this.runningInitializations.contains(future))
+                .forEach(future -> future.cancel(false));
+        }
+    }
+
+    /**
+     * Wait for the initializations in progress to be done.
+     *
+     * @param timeout the maximum time to wait
+     * @return true if every initialization is done, false if the timeout expired before
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public boolean awaitInitializations(Duration timeout) throws InterruptedException
+    {
+        try {
+            CompletableFuture.allOf(this.pendingInitializations.toArray(new CompletableFuture[0]))
+                .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // Failed initializations are done too.
+        } catch (TimeoutException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Interrupt the initializations in progress, which are considered canceled.
+     */
+    public void interrupt()
+    {
+        this.pendingInitializations.forEach(future -> future.cancel(false));
+        this.workerPools.forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Start the initialization of the given wikis.
+     *
+     * @param descriptors the descriptors of the wikis to initialize
+     * @param concurrency the maximum number of wikis initialized at the same time
+     * @param timeout the maximum time allowed to initialize each wiki, or {@code null} for no limit
+     * @return the futures tracking the initialization of each wiki, indexed by wiki identifier
+     * @see WikiInitializationManager#initialize(Collection, int, Duration)
+     */
+    public Map<String, CompletableFuture<Void>> initialize(Collection<WikiDescriptor> descriptors, int concurrency,
+        Duration timeout)
+    {
+        return initialize(descriptors, concurrency, timeout, null);
+    }
+
+    /**
+     * Start the initialization of the given wikis, the number of wikis initialized at the same time being adjusted
+     * by the given limiter.
+     *
+     * @param descriptors the descriptors of the wikis to initialize
+     * @param concurrency the maximum number of wikis initialized at the same time
+     * @param timeout the maximum time allowed to initialize each wiki, or {@code null} for no limit
+     * @param limiter the limiter deciding when each initialization can start, or {@code null} to only rely on the
+     *            given concurrency
+     * @return the futures tracking the initialization of each wiki, indexed by wiki identifier
+     */
+    public Map<String, CompletableFuture<Void>> initialize(Collection<WikiDescriptor> descriptors, int concurrency,
+        Duration timeout, AdaptiveConcurrencyLimiter limiter)
+    {
+        return initialize(descriptors, concurrency, timeout, limiter, Collections.emptyMap());
+    }
+
+    /**
+     * Start the initialization of the given wikis, each wiki being initialized only once the wikis it depends on are
+     * initialized. A wiki fails without being initialized when one of the wikis it depends on fails.
+     *
+     * @param descriptors the descriptors of the wikis to initialize, each wiki coming after the wikis it depends on
+     * @param concurrency the maximum number of wikis initialized at the same time
+     * @param timeout the maximum time allowed to initialize each wiki, or {@code null} for no limit
+     * @param limiter the limiter deciding when each initialization can start, or {@code null} to only rely on the
+     *            given concurrency
+     * @param dependencies the identifiers of the wikis that each wiki depends on, indexed by wiki identifier; the
+     *            wikis that are not part of the given descriptors are ignored
+     * @return the futures tracking the initialization of each wiki, indexed by wiki identifier
+     * @see WikiDependencyGraph
+     */
+    public Map<String, CompletableFuture<Void>> initialize(Collection<WikiDescriptor> descriptors, int concurrency,
+        Duration timeout, AdaptiveConcurrencyLimiter limiter, Map<String, ? extends Collection<String>> dependencies)
+    {
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        descriptors.forEach(descriptor -> futures.put(descriptor.getId(), new CompletableFuture<>()));
+
+        synchronized (this.stopLock) {
+            if (this.stopping) {
+                futures.values().forEach(future -> future.cancel(false));
+                return futures;
+            }
+            this.pendingInitializations.addAll(futures.values());
+        }
+        futures.values().forEach(
+            future -> future.whenComplete((result, error) -> this.pendingInitializations.remove(future)));
+
+        if (!descriptors.isEmpty()) {
+            XWikiContext callerContext = this.contextProvider.get();
+            int poolSize = Math.max(1, Math.min(concurrency, descriptors.size()));
+            ThreadFactory virtualThreads =
+                this.configurationProvider.get().isVirtualThreads() ? getVirtualThreadFactory() : null;
+
+            ExecutorService executor;
+            BatchSlots slots;
+            if (virtualThreads != null) {
+                // Virtual threads are cheap, the semaphore protects the database instead of the size of the pool.
+                executor = newThreadPerTaskExecutor(virtualThreads);
+                slots = new BatchSlots(new Semaphore(poolSize), null);
+            } else {
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    new BasicThreadFactory.Builder().namingPattern(THREAD_NAME_PATTERN).daemon(true).build());
+                executor = pool;
+                slots = new BatchSlots(null, pool);
+            }
+
+            this.workerPools.add(executor);
+
+            for (WikiDescriptor descriptor : descriptors) {
+                CompletableFuture<Void> future = futures.get(descriptor.getId());
+                Runnable task = () -> runInSlot(descriptor, callerContext, timeout, limiter, slots, future);
+
+                Collection<String> wikiDependencies = dependencies.containsKey(descriptor.getId())
+                    ? dependencies.get(descriptor.getId()) : Collections.<String>emptyList();
+                CompletableFuture<?>[] prerequisites = wikiDependencies.stream().map(futures::get)
+                    .filter(Objects::nonNull).toArray(CompletableFuture[]::new);
+                if (prerequisites.length == 0) {
+                    executor.execute(task);
+                } else {
+                    // The dependents don't hold a worker while waiting for their dependencies.
+                    CompletableFuture.allOf(prerequisites).whenComplete(
+                        (result, error) -> executeDependent(descriptor.getId(), task, error, executor, future));
+                }
+            }
+
+            if (dependencies.isEmpty()) {
+                // Already submitted tasks are still executed, the threads are released once they are done.
+                executor.shutdown();
+            }
+            // The dependents are submitted as their dependencies complete.
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .whenComplete((result, error) -> {
+                    executor.shutdown();
+                    this.workerPools.remove(executor);
+                });
+        }
+
+        return futures;
+    }
+
+    private void executeDependent(String wikiId, Runnable task, Throwable dependencyError, ExecutorService executor,
+        CompletableFuture<Void> future)
+    {
+        if (dependencyError != null) {
+            future.completeExceptionally(new WikiInitializationException(
+                String.format("A wiki that wiki [%s] depends on could not be initialized", wikiId),
+                (dependencyError instanceof CompletionException) ? dependencyError.getCause() : dependencyError));
+        } else if (!future.isDone()) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The initialization has been canceled in the meantime and every other one is done.
+                future.cancel(false);
+            }
+        }
+    }
+
+    private void runInSlot(WikiDescriptor descriptor, XWikiContext callerContext, Duration timeout,
+        AdaptiveConcurrencyLimiter limiter, BatchSlots slots, CompletableFuture<Void> future)
+    {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            return;
+        }
+
+        boolean handedOver = false;
+        try {
+            handedOver = run(descriptor, callerContext, timeout, limiter, slots, future);
+        } finally {
+            slots.release(handedOver);
+        }
+    }
+
+    /**
+     * @return true if the initialization timed out, in which case its slot and its limiter permit have already been
+     *         handed over to the next initializations
+     */
+    private boolean run(WikiDescriptor descriptor, XWikiContext callerContext, Duration timeout,
+        AdaptiveConcurrencyLimiter limiter, BatchSlots slots, CompletableFuture<Void> future)
+    {
+        // The initialization may have been canceled while waiting for a worker.
+        if (future.isDone() || !acquire(limiter, future)) {
+            return false;
+        }
+
+        if (!markRunning(future)) {
+            if (limiter != null) {
+                limiter.cancel();
+            }
+            return false;
+        }
+
+        String wikiId = descriptor.getId();
+        long expectedDuration = (limiter != null) ? limiter.getExpectedDuration(wikiId) : -1;
+        long start = System.nanoTime();
+        // An initialization stuck in a call ignoring interruptions (e.g. a socket read) keeps running in the
+        // background, but doesn't hold up the rest of the batch nor the next attempts to initialize the wiki.
+        WorkerTimeout workerTimeout = startTimeout(descriptor, timeout, future, () -> {
+            slots.handOver();
+            if (limiter != null) {
+                limiter.release(expectedDuration, System.nanoTime() - start, false);
+            }
+            this.wikiInitializationManagerProvider.get().abandon(wikiId);
+        });
+
+        boolean expired = false;
+        try {
+            runInContext(descriptor, callerContext);
+            future.complete(null);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        } finally {
+            synchronized (this.stopLock) {
+                this.runningInitializations.remove(future);
+            }
+            if (workerTimeout != null) {
+                expired = workerTimeout.stop();
+            }
+            if (limiter != null && !expired) {
+                limiter.release(expectedDuration, System.nanoTime() - start, !future.isCompletedExceptionally());
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * @return false if the initialization should not start because the executor is stopping
+     */
+    private boolean markRunning(CompletableFuture<Void> future)
+    {
+        synchronized (this.stopLock) {
+            if (this.stopping) {
+                future.cancel(false);
+                return false;
+            }
+            this.runningInitializations.add(future);
+
+            return true;
+        }
+    }
+
+    /**
+     * @return false if the initialization has been canceled while waiting for the limiter
+     */
+    private boolean acquire(AdaptiveConcurrencyLimiter limiter, CompletableFuture<Void> future)
+    {
+        if (limiter != null) {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(false);
+                return false;
+            }
+
+            if (future.isDone()) {
+                limiter.cancel();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the factory of virtual threads, or {@code null} if the JVM doesn't support them
+     */
+    private synchronized ThreadFactory getVirtualThreadFactory()
+    {
+        if (!this.virtualThreadsResolved) {
+            this.virtualThreadsResolved = true;
+
+            // Resolved by reflection since the module is still compiled for and runs on JVMs without virtual threads.
+            try {
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderClass.getMethod("name", String.class, long.class).invoke(builder,
+                    VIRTUAL_THREAD_NAME_PREFIX, 1L);
+                this.virtualThreadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                this.logger.info("Virtual threads are not supported by the JVM, the wikis are initialized on a pool"
+                    + " of platform threads instead");
+                this.logger.debug("Failed to create the virtual thread factory", e);
+            }
+        }
+
+        return this.virtualThreadFactory;
+    }
+
+    private ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory)
+    {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            // Can't happen on a JVM supporting virtual threads.
+            throw new IllegalStateException("Failed to create the virtual thread executor", e);
+        }
+    }
+
+    private void runInContext(WikiDescriptor descriptor, XWikiContext callerContext) throws Exception
+    {
+        ExecutionContext executionContext = new ExecutionContext();
+        if (callerContext != null) {
+            callerContext.clone().declareInExecutionContext(executionContext);
+        }
+        this.executionContextManager.initialize(executionContext);
+
+        try {
+            this.wikiInitializationManagerProvider.get().initialize(descriptor);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    private WorkerTimeout startTimeout(WikiDescriptor descriptor, Duration timeout, CompletableFuture<Void> future,
+        Runnable onExpiration)
+    {
+        if (timeout == null || timeout.isZero() || timeout.isNegative()) {
+            return null;
+        }
+
+        WorkerTimeout workerTimeout = new WorkerTimeout(Thread.currentThread(), onExpiration);
+        workerTimeout.scheduledFuture = this.timeoutScheduler.schedule(() -> workerTimeout.expire(future,
+            new WikiInitializationException(String.format("Initialization of wiki [%s] timed out after [%s] ms",
+                descriptor.getId(), timeout.toMillis()))),
+            timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        return workerTimeout;
+    }
+
+    /**
+     * Interrupt a worker when the initialization it is running takes too long, making sure that the interruption
+     * never leaks to the next initialization handled by the same worker.
+     */
+    private static final class WorkerTimeout
+    {
+        private final Thread worker;
+
+        private final Runnable onExpiration;
+
+        private ScheduledFuture<?> scheduledFuture;
+
+        private boolean stopped;
+
+        private boolean expired;
+
+        WorkerTimeout(Thread worker, Runnable onExpiration)
+        {
+            this.worker = worker;
+            this.onExpiration = onExpiration;
+        }
+
+        synchronized void expire(CompletableFuture<Void> future, WikiInitializationException cause)
+        {
+            if (!this.stopped && future.completeExceptionally(cause)) {
+                this.expired = true;
+                this.worker.interrupt();
+                this.onExpiration.run();
+            }
+        }
+
+        /**
+         * @return true if the timeout expired
+         */
+        boolean stop()
+        {
+            boolean timedOut;
+            synchronized (this) {
+                this.stopped = true;
+                timedOut = this.expired;
+            }
+            this.scheduledFuture.cancel(false);
+            // Only clear the interruption coming from the expiration of the timeout, not the ones sent by others
+            // (e.g. when the job is canceled or the executor is shut down).
+            if (timedOut) {
+                Thread.interrupted();
+            }
+
+            return timedOut;
+        }
+    }
+
+    /**
+     * The slots bounding the number of wikis of a batch initialized at the same time: the permits of a semaphore
+     * when each wiki runs on its own virtual thread, or the threads of a fixed pool otherwise. A timed out
+     * initialization hands its slot over to the next initializations while it keeps running, either by releasing its
+     * permit or by adding a worker to the pool until it ends.
+     */
+    private static final class BatchSlots
+    {
+        private final Semaphore permits;
+
+        private final ThreadPoolExecutor pool;
+
+        BatchSlots(Semaphore permits, ThreadPoolExecutor pool)
+        {
+            this.permits = permits;
+            this.pool = pool;
+        }
+
+        void acquire() throws InterruptedException
+        {
+            if (this.permits != null) {
+                this.permits.acquire();
+            }
+        }
+
+        void handOver()
+        {
+            if (this.permits != null) {
+                this.permits.release();
+            } else {
+                resizePool(1);
+            }
+        }
+
+        void release(boolean handedOver)
+        {
+            if (this.permits != null) {
+                if (!handedOver) {
+                    this.permits.release();
+                }
+            } else if (handedOver) {
+                resizePool(-1);
+            }
+        }
+
+        private void resizePool(int delta)
+        {
+            synchronized (this.pool) {
+                // The core size can't exceed the maximum size, and the new core threads process the queued tasks.
+                if (delta > 0) {
+                    this.pool.setMaximumPoolSize(this.pool.getMaximumPoolSize() + delta);
+                    this.pool.setCorePoolSize(this.pool.getCorePoolSize() + delta);
+                } else {
+                    this.pool.setCorePoolSize(this.pool.getCorePoolSize() + delta);
+                    this.pool.setMaximumPoolSize(this.pool.getMaximumPoolSize() + delta);
+                }
+            }
+        }
+    }
+}
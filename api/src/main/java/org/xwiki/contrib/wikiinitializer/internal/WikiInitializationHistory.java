@@ -0,0 +1,100 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+
+/**
+ * Remember how long the last initialization of each wiki took, across restarts, so that the initialization can be
+ * scheduled according to the expected cost of each wiki.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializationHistory.class)
+@Singleton
+public class WikiInitializationHistory implements Initializable, Disposable
+{
+    private static final String STORE_NAME = "durations";
+
+    @Inject
+    private WikiInitializerStore store;
+
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize()
+    {
+        Properties properties = this.store.load(STORE_NAME);
+        for (String wikiId : properties.stringPropertyNames()) {
+            long duration = NumberUtils.toLong(properties.getProperty(wikiId), -1);
+            if (duration >= 0) {
+                this.durations.put(wikiId, duration);
+            }
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        save();
+    }
+
+    /**
+     * Record the duration of a successful initialization.
+     *
+     * @param wikiId the identifier of the initialized wiki
+     * @param durationMillis the duration of the initialization, in milliseconds
+     */
+    public void recordDuration(String wikiId, long durationMillis)
+    {
+        this.durations.put(wikiId, durationMillis);
+    }
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return the duration of the last successful initialization of the wiki in milliseconds, or -1 if unknown
+     */
+    public long getLastDuration(String wikiId)
+    {
+        return this.durations.getOrDefault(wikiId, -1L);
+    }
+
+    /**
+     * Save the recorded durations in the permanent directory.
+     */
+    public void save()
+    {
+        Properties properties = new Properties();
+        this.durations.forEach((wikiId, duration) -> properties.setProperty(wikiId, String.valueOf(duration)));
+
+        this.store.save(STORE_NAME, properties, "Duration of the last initialization of each wiki, in milliseconds");
+    }
+}
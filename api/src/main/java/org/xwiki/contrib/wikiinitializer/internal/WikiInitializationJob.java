@@ -0,0 +1,484 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Job warming up the main wiki and initializing the sub-wikis in the background, so that the application startup
+ * doesn't have to wait for it, and then replaying the configured requests.
+ * When the lazy initialization is enabled, the job first initializes the configured sub-wikis and then prefetches
+ * the other ones, one at a time, whenever the server is idle.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component
+@Named(WikiInitializationJob.JOB_TYPE)
+@InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+public class WikiInitializationJob extends AbstractJob<WikiInitializationJobRequest, WikiInitializationJobStatus>
+{
+    /**
+     * The type of the job.
+     */
+    public static final String JOB_TYPE = "wikiinitializer.subwikis";
+
+    /**
+     * The time without any request after which the server is considered idle, in milliseconds.
+     */
+    private static final long IDLE_DELAY = 1000L;
+
+    /**
+     * The maximum time to wait for the server to be idle before prefetching a wiki anyway, in milliseconds, so that
+     * the prefetch still progresses on a server that is never idle.
+     */
+    private static final long MAX_IDLE_WAIT = 30000L;
+
+    private static final long IDLE_CHECK_INTERVAL = 100L;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    private Provider<WikiDescriptorManager> wikiDescriptorManagerProvider;
+
+    @Inject
+    private Provider<WikiInitializationManager> wikiInitializationManagerProvider;
+
+    @Inject
+    private SubWikiInitializationRunner subWikiInitializationRunner;
+
+    @Inject
+    private WikiInitializationPrioritizer prioritizer;
+
+    @Inject
+    private WikiInitializationHistory history;
+
+    @Inject
+    private WikiAccessTracker accessTracker;
+
+    @Inject
+    private WikiRequestReplayer requestReplayer;
+
+    @Inject
+    private WikiInitializationSharding sharding;
+
+    @Inject
+    private WikiInitializationJournal journal;
+
+    @Inject
+    private PagedWikiEnumerator wikiEnumerator;
+
+    @Inject
+    private WikiInitializationReadiness readiness;
+
+    @Inject
+    private WikiCacheWarmer cacheWarmer;
+
+    @Inject
+    private WikiInitializationMetrics metrics;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    private volatile Thread jobThread;
+
+    @Override
+    public String getType()
+    {
+        return JOB_TYPE;
+    }
+
+    @Override
+    protected WikiInitializationJobStatus createNewStatus(WikiInitializationJobRequest request)
+    {
+        return new WikiInitializationJobStatus(JOB_TYPE, request, null, this.observationManager,
+            this.loggerManager);
+    }
+
+    /**
+     * Interrupt the thread running the job, e.g. when the application stops and the job didn't stop on time after
+     * being canceled.
+     */
+    public void interrupt()
+    {
+        Thread thread = this.jobThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    protected void runInternal() throws Exception
+    {
+        this.jobThread = Thread.currentThread();
+        try {
+            initializeSubWikis();
+        } finally {
+            this.jobThread = null;
+        }
+    }
+
+    private void initializeSubWikis() throws Exception
+    {
+        WikiInitializerConfiguration configuration = this.configurationProvider.get();
+        this.readiness.startPlan();
+        warmUpMainWiki(configuration);
+
+        // In a cluster, the sub-wikis of the other shards are left to be initialized on their first access.
+        Predicate<String> localShard = this.sharding.getLocalShard();
+        List<WikiDescriptor> prefetchedWikis = Collections.emptyList();
+        Iterator<List<WikiDescriptor>> subWikiPages;
+        int totalWikis;
+        if (isPagedEnumeration(configuration)) {
+            this.logger.info("Initializing the sub-wikis by pages of [{}] with a parallelism of [{}] ...",
+                configuration.getEnumerationPageSize(), configuration.getParallelism());
+
+            subWikiPages = getSubWikiPages(configuration, localShard);
+            // Estimated: the sub-wikis of the other shards and the unchanged ones are counted but not initialized.
+            totalWikis = (int) Math.max(0L, this.wikiEnumerator.count() - 1);
+        } else {
+            List<WikiDescriptor> subWikis = getSubWikis(configuration, localShard);
+            if (configuration.isFastRestart()) {
+                subWikis = withoutUnchangedWikis(subWikis, configuration);
+            }
+            if (configuration.isLazyInitialization()) {
+                prefetchedWikis = getPrefetchedWikis(configuration, subWikis, localShard);
+            }
+
+            this.logger.info("Initializing [{}] sub-wikis with a parallelism of [{}] and the [{}] scheduling ...",
+                subWikis.size(), configuration.getParallelism(), configuration.getScheduling());
+
+            subWikiPages = Collections.singletonList(subWikis).iterator();
+            totalWikis = subWikis.size() + prefetchedWikis.size();
+
+            // The prefetched sub-wikis are left to their first access until then, like the unchanged ones.
+            this.readiness.addPlannedWikis(toIds(subWikis));
+            this.readiness.completePlan();
+        }
+
+        this.status.setTotalWikis(totalWikis);
+        this.progressManager.pushLevelProgress(totalWikis, this);
+
+        try {
+            WikiInitializationSummary summary = this.subWikiInitializationRunner.run(subWikiPages, configuration,
+                new SubWikiInitializationRunner.Monitor()
+                {
+                    @Override
+                    public boolean isCanceled()
+                    {
+                        return status.isCanceled();
+                    }
+
+                    @Override
+                    public void wikiProcessed(String wikiId)
+                    {
+                        progressManager.startStep(WikiInitializationJob.this);
+                        status.incrementProcessedWikis();
+                        progressManager.endStep(WikiInitializationJob.this);
+                    }
+                });
+
+            // Replay the requests once the configured sub-wikis are ready, so that the node serves them at full speed
+            // as soon as possible; the prefetched sub-wikis are not awaited since they may take a while.
+            if (this.requestReplayer.isEnabled(configuration) && !this.status.isCanceled()) {
+                this.requestReplayer.replay(this.status::isCanceled);
+            }
+
+            if (!prefetchedWikis.isEmpty()) {
+                this.logger.info("Prefetching [{}] sub-wikis ...", prefetchedWikis.size());
+                prefetch(prefetchedWikis, configuration, summary);
+                summary.end();
+            }
+
+            this.status.setSummary(summary);
+
+            if (this.status.isCanceled()) {
+                this.logger.warn("Sub-wikis initialization canceled: {}", summary);
+            } else {
+                this.logger.info("Sub-wikis initialization done: {}", summary);
+            }
+        } finally {
+            // The pages of sub-wikis are planned as they are enumerated, until the last one.
+            this.readiness.completePlan();
+            this.progressManager.popLevelProgress(this);
+            this.history.save();
+            this.journal.save();
+        }
+    }
+
+    /**
+     * The main wiki is initialized before XWiki is ready, so its caches are only warmed up once the application is
+     * ready, from the job rather than from the thread notifying the application startup.
+     */
+    private void warmUpMainWiki(WikiInitializerConfiguration configuration) throws InterruptedException
+    {
+        if (!configuration.initializeMainWiki() || !configuration.isWarmUpEnabled()
+            || !this.wikiInitializationManagerProvider.get().isInitialized(XWiki.DEFAULT_MAIN_WIKI)) {
+            return;
+        }
+
+        XWikiContext context = this.contextProvider.get();
+        if (context == null || context.getWiki() == null) {
+            this.logger.warn("Skipping the warm up of the main wiki since XWiki is not initialized");
+            return;
+        }
+
+        long start = System.nanoTime();
+        this.cacheWarmer.warmUp(XWiki.DEFAULT_MAIN_WIKI, context);
+        this.metrics.recordPhase(WikiInitializationPhase.WARM_UP, System.nanoTime() - start);
+    }
+
+    private List<WikiDescriptor> getSubWikis(WikiInitializerConfiguration configuration,
+        Predicate<String> localShard) throws WikiManagerException
+    {
+        WikiSelector selector = WikiSelector.fromConfiguration(configuration);
+        Collection<WikiDescriptor> wikisToInitialize =
+            (configuration.initializeAllSubWikis() && !configuration.isLazyInitialization())
+                ? this.wikiDescriptorManagerProvider.get().getAll()
+                : getSelectedWikis(configuration, selector);
+
+        return this.prioritizer.prioritize(wikisToInitialize.stream()
+            .filter(descriptor -> !XWiki.DEFAULT_MAIN_WIKI.equals(descriptor.getId()))
+            .filter(descriptor -> !selector.isExcluded(descriptor.getId()) && localShard.test(descriptor.getId()))
+            .collect(Collectors.toList()), configuration);
+    }
+
+    /**
+     * @return the existing sub-wikis listed in the configuration or matching its selection patterns and criteria
+     */
+    private Collection<WikiDescriptor> getSelectedWikis(WikiInitializerConfiguration configuration,
+        WikiSelector selector) throws WikiManagerException
+    {
+        WikiDescriptorManager wikiDescriptorManager = this.wikiDescriptorManagerProvider.get();
+        Map<String, WikiDescriptor> selectedWikis = new LinkedHashMap<>();
+
+        for (WikiDescriptor configuredWiki : configuration.getInitializableWikis()) {
+            WikiDescriptor descriptor = wikiDescriptorManager.getById(configuredWiki.getId());
+            if (descriptor != null) {
+                selectedWikis.put(descriptor.getId(), descriptor);
+            } else {
+                this.logger.warn("Ignoring the unknown sub-wiki [{}]", configuredWiki.getId());
+            }
+        }
+
+        if (selector.isSelecting()) {
+            wikiDescriptorManager.getAll().stream().filter(selector::matches)
+                .forEach(descriptor -> selectedWikis.putIfAbsent(descriptor.getId(), descriptor));
+        }
+
+        return selectedWikis.values();
+    }
+
+    /**
+     * @return true if the sub-wikis should be enumerated page by page
+     */
+    private boolean isPagedEnumeration(WikiInitializerConfiguration configuration)
+    {
+        if (configuration.getEnumerationPageSize() <= 0 || !configuration.initializeAllSubWikis()
+            || configuration.isLazyInitialization()) {
+            return false;
+        }
+
+        // The pages only hold the identifiers of the sub-wikis, and each page is initialized on its own.
+        if (!configuration.getWikiDependencies().isEmpty() || configuration.getWikiDependenciesProperty() != null
+            || !configuration.getSelectedWikiProperties().isEmpty()) {
+            this.logger.warn("The sub-wikis are not enumerated by pages since the dependencies between sub-wikis and"
+                + " the selection by descriptor properties require every descriptor to be loaded");
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Enumerate the sub-wikis page by page, the priority sub-wikis coming first, so that the initialization starts
+     * before every sub-wiki is known and the memory used doesn't depend on the number of sub-wikis. The scheduling
+     * only applies inside each page.
+     */
+    private Iterator<List<WikiDescriptor>> getSubWikiPages(WikiInitializerConfiguration configuration,
+        Predicate<String> localShard) throws WikiManagerException
+    {
+        WikiDescriptorManager wikiDescriptorManager = this.wikiDescriptorManagerProvider.get();
+        WikiSelector selector = WikiSelector.fromConfiguration(configuration);
+        Predicate<String> selected = wikiId -> !XWiki.DEFAULT_MAIN_WIKI.equals(wikiId)
+            && !selector.isExcluded(wikiId) && localShard.test(wikiId);
+
+        List<WikiDescriptor> priorityWikis = new ArrayList<>();
+        for (String wikiId : configuration.getPriorityWikis()) {
+            if (selected.test(wikiId) && wikiDescriptorManager.exists(wikiId)) {
+                priorityWikis.add(new WikiDescriptor(wikiId, wikiId));
+            }
+        }
+        Set<String> priorityWikiIds = new HashSet<>(configuration.getPriorityWikis());
+        this.readiness.addPlannedWikis(toIds(priorityWikis));
+
+        Stream<List<WikiDescriptor>> otherWikis = StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            this.wikiEnumerator.getPages(configuration.getEnumerationPageSize()), Spliterator.ORDERED), false)
+            .map(wikiIds -> {
+                List<WikiDescriptor> page = wikiIds.stream()
+                    .filter(wikiId -> selected.test(wikiId) && !priorityWikiIds.contains(wikiId))
+                    .map(wikiId -> new WikiDescriptor(wikiId, wikiId))
+                    .collect(Collectors.toList());
+
+                List<WikiDescriptor> plannedPage = this.prioritizer.prioritize(
+                    configuration.isFastRestart() ? withoutUnchangedWikis(page, configuration) : page, configuration);
+                this.readiness.addPlannedWikis(toIds(plannedPage));
+
+                return plannedPage;
+            });
+
+        return Stream.concat(Stream.of(priorityWikis), otherWikis).iterator();
+    }
+
+    /**
+     * The sub-wikis that did not change since their last initialization are left to their first access or, with the
+     * lazy initialization, to the background prefetch.
+     */
+    private List<WikiDescriptor> withoutUnchangedWikis(List<WikiDescriptor> subWikis,
+        WikiInitializerConfiguration configuration)
+    {
+        // Checked at once since it reads the database of each wiki.
+        Set<String> unchangedWikis = this.journal.getUnchangedWikis(toIds(subWikis), configuration.getParallelism());
+        List<WikiDescriptor> changedWikis = subWikis.stream()
+            .filter(descriptor -> !unchangedWikis.contains(descriptor.getId()))
+            .collect(Collectors.toList());
+
+        if (changedWikis.size() < subWikis.size()) {
+            this.logger.info("Deferring the initialization of [{}] sub-wikis which did not change since their last"
+                + " initialization", subWikis.size() - changedWikis.size());
+        }
+
+        return changedWikis;
+    }
+
+    private List<WikiDescriptor> getPrefetchedWikis(WikiInitializerConfiguration configuration,
+        List<WikiDescriptor> subWikis, Predicate<String> localShard) throws WikiManagerException
+    {
+        Set<String> eagerWikiIds = subWikis.stream().map(WikiDescriptor::getId).collect(Collectors.toSet());
+        WikiSelector selector = WikiSelector.fromConfiguration(configuration);
+
+        return this.prioritizer.prioritize(this.wikiDescriptorManagerProvider.get().getAll().stream()
+            .filter(descriptor -> !XWiki.DEFAULT_MAIN_WIKI.equals(descriptor.getId())
+                && !eagerWikiIds.contains(descriptor.getId()) && !selector.isExcluded(descriptor.getId())
+                && localShard.test(descriptor.getId()))
+            .collect(Collectors.toList()), configuration);
+    }
+
+    private static List<String> toIds(List<WikiDescriptor> descriptors)
+    {
+        return descriptors.stream().map(WikiDescriptor::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Initialize the given sub-wikis one at a time whenever the server is idle, each of them going through the
+     * executor like the eagerly initialized sub-wikis, so that it is bounded by the configured timeout and retried.
+     */
+    private void prefetch(List<WikiDescriptor> descriptors, WikiInitializerConfiguration configuration,
+        WikiInitializationSummary summary)
+    {
+        SubWikiInitializationRunner.Monitor monitor = new SubWikiInitializationRunner.Monitor()
+        {
+            @Override
+            public boolean isCanceled()
+            {
+                return status.isCanceled();
+            }
+
+            @Override
+            public void wikiProcessed(String wikiId)
+            {
+                // The progress is reported once the prefetch of the wiki is done, retries included.
+            }
+        };
+
+        for (WikiDescriptor descriptor : descriptors) {
+            if (this.status.isCanceled() || !waitForIdleServer()) {
+                summary.addSkippedWiki(descriptor.getId());
+                continue;
+            }
+
+            this.progressManager.startStep(this);
+            // Returns right away when the wiki has already been initialized on its first access.
+            WikiInitializationSummary wikiSummary = this.subWikiInitializationRunner
+                .run(Collections.singletonList(descriptor), configuration, monitor);
+            wikiSummary.getInitializedWikis().forEach(summary::addInitializedWiki);
+            wikiSummary.getFailedWikis().forEach(summary::addFailedWiki);
+            wikiSummary.getSkippedWikis().forEach(summary::addSkippedWiki);
+            this.status.incrementProcessedWikis();
+            this.progressManager.endStep(this);
+        }
+    }
+
+    /**
+     * @return false if the job has been canceled or interrupted while waiting
+     */
+    private boolean waitForIdleServer()
+    {
+        long maxWaitEnd = System.currentTimeMillis() + MAX_IDLE_WAIT;
+
+        try {
+            while (System.currentTimeMillis() - this.accessTracker.getLastAccessTime() < IDLE_DELAY
+                && System.currentTimeMillis() < maxWaitEnd) {
+                if (this.status.isCanceled()) {
+                    return false;
+                }
+                Thread.sleep(IDLE_CHECK_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return true;
+    }
+}
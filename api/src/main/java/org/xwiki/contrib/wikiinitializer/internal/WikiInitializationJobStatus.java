@@ -0,0 +1,170 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LoggerManager;
+import org.xwiki.observation.ObservationManager;
+
+/**
+ * Status of the {@link WikiInitializationJob}, giving access to the number of processed wikis, the elapsed time and
+ * an estimation of the remaining time.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public class WikiInitializationJobStatus extends DefaultJobStatus<WikiInitializationJobRequest>
+{
+    private volatile int totalWikis;
+
+    private volatile int processedWikis;
+
+    private List<String> initializedWikis = Collections.emptyList();
+
+    private Map<String, String> failedWikis = Collections.emptyMap();
+
+    private List<String> skippedWikis = Collections.emptyList();
+
+    /**
+     * @param jobType the type of the job
+     * @param request the request provided when the job was started
+     * @param parentJobStatus the status of the parent job (i.e. the status of the job that started this one); pass
+     *            {@code null} if this job hasn't been started by another job (i.e. if this is not a sub-job)
+     * @param observationManager the observation manager component
+     * @param loggerManager the logger manager component
+     */
+    public WikiInitializationJobStatus(String jobType, WikiInitializationJobRequest request,
+        JobStatus parentJobStatus, ObservationManager observationManager, LoggerManager loggerManager)
+    {
+        super(jobType, request, parentJobStatus, observationManager, loggerManager);
+
+        setCancelable(true);
+    }
+
+    /**
+     * @return the number of wikis to initialize
+     */
+    public int getTotalWikis()
+    {
+        return this.totalWikis;
+    }
+
+    /**
+     * @param totalWikis the number of wikis to initialize
+     */
+    public void setTotalWikis(int totalWikis)
+    {
+        this.totalWikis = totalWikis;
+    }
+
+    /**
+     * @return the number of wikis that have been processed so far, whether their initialization succeeded or not
+     */
+    public int getProcessedWikis()
+    {
+        return this.processedWikis;
+    }
+
+    /**
+     * Record that one more wiki has been processed. Safe to call from any thread.
+     */
+    public synchronized void incrementProcessedWikis()
+    {
+        this.processedWikis++;
+    }
+
+    /**
+     * @return the identifiers of the wikis that have been successfully initialized, available once the job is done
+     */
+    public List<String> getInitializedWikis()
+    {
+        return this.initializedWikis;
+    }
+
+    /**
+     * @return the identifiers of the wikis that could not be initialized associated with the error message, available
+     *         once the job is done
+     */
+    public Map<String, String> getFailedWikis()
+    {
+        return this.failedWikis;
+    }
+
+    /**
+     * @return the identifiers of the wikis that have been skipped because the job was canceled, available once the
+     *         job is done
+     */
+    public List<String> getSkippedWikis()
+    {
+        return this.skippedWikis;
+    }
+
+    /**
+     * Copy the outcome of the initialization in the status.
+     *
+     * @param summary the summary of the initialization
+     */
+    public void setSummary(WikiInitializationSummary summary)
+    {
+        this.initializedWikis = Collections.unmodifiableList(new ArrayList<>(summary.getInitializedWikis()));
+
+        Map<String, String> failures = new LinkedHashMap<>();
+        summary.getFailedWikis().forEach((wikiId, cause) -> failures.put(wikiId, cause.getMessage()));
+        this.failedWikis = Collections.unmodifiableMap(failures);
+
+        this.skippedWikis = Collections.unmodifiableList(new ArrayList<>(summary.getSkippedWikis()));
+    }
+
+    /**
+     * @return the time elapsed since the beginning of the job, in milliseconds
+     */
+    public long getElapsedTime()
+    {
+        if (getStartDate() == null) {
+            return 0;
+        }
+
+        long end = (getEndDate() != null) ? getEndDate().getTime() : System.currentTimeMillis();
+
+        return end - getStartDate().getTime();
+    }
+
+    /**
+     * @return an estimation of the time needed to initialize the remaining wikis, in milliseconds, or -1 if no
+     *         estimation can be made yet
+     */
+    public long getEstimatedRemainingTime()
+    {
+        int processed = this.processedWikis;
+
+        if (processed == 0) {
+            return -1;
+        }
+
+        return getElapsedTime() * (this.totalWikis - processed) / processed;
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.extension.CoreExtension;
+import org.xwiki.extension.InstalledExtension;
+import org.xwiki.extension.repository.CoreExtensionRepository;
+import org.xwiki.extension.repository.InstalledExtensionRepository;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.store.migration.DataMigrationManager;
+import com.xpn.xwiki.store.migration.XWikiDBVersion;
+
+/**
+ * Journal of the last successful initialization of each sub-wiki, kept across restarts. Each entry holds a
+ * fingerprint of what the initialization depends on (the version of the database of the wiki, the version expected by
+ * the running XWiki, the version of XWiki and the extensions installed on the wiki) so that the sub-wikis that did not
+ * change since their last initialization can be recognized. The fingerprints of many wikis are checked at once with
+ * {@link #getUnchangedWikis(Collection, int)}, which only reads the database version of each wiki concurrently and
+ * computes the rest of the fingerprints once.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializationJournal.class)
+@Singleton
+public class WikiInitializationJournal implements Initializable, Disposable
+{
+    private static final String STORE_NAME = "journal";
+
+    private static final String SEPARATOR = ",";
+
+    private static final String WIKI_NAMESPACE_PREFIX = "wiki:";
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private WikiInitializerStore store;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    @Named("hibernate")
+    private Provider<DataMigrationManager> dataMigrationManagerProvider;
+
+    @Inject
+    private Provider<InstalledExtensionRepository> installedExtensionRepositoryProvider;
+
+    @Inject
+    private Provider<CoreExtensionRepository> coreExtensionRepositoryProvider;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    /**
+     * The fingerprint and the time of the last successful initialization of each wiki, separated by a comma.
+     */
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize()
+    {
+        Properties properties = this.store.load(STORE_NAME);
+        for (String wikiId : properties.stringPropertyNames()) {
+            this.entries.put(wikiId, properties.getProperty(wikiId));
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        save();
+    }
+
+    /**
+     * Record the successful initialization of a wiki, with its current fingerprint.
+     *
+     * @param wikiId the identifier of the initialized wiki
+     */
+    public void recordInitialization(String wikiId)
+    {
+        String fingerprint = computeFingerprint(wikiId, getFarmState());
+        if (fingerprint != null) {
+            this.entries.put(wikiId, fingerprint + SEPARATOR + System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return true if the wiki has been successfully initialized before and did not change since then
+     */
+    public boolean isUnchanged(String wikiId)
+    {
+        return this.entries.containsKey(wikiId) && isUnchanged(wikiId, computeFingerprint(wikiId, getFarmState()));
+    }
+
+    /**
+     * Check many wikis at once, reading the database versions of the wikis from the given number of threads.
+     *
+     * @param wikiIds the identifiers of the wikis to check
+     * @param parallelism the maximum number of wikis checked at the same time
+     * @return the given wikis which have been successfully initialized before and did not change since then
+     */
+    public Set<String> getUnchangedWikis(Collection<String> wikiIds, int parallelism)
+    {
+        // The wikis never initialized don't need a fingerprint.
+        List<String> journaledWikis = new ArrayList<>();
+        wikiIds.stream().filter(this.entries::containsKey).forEach(journaledWikis::add);
+
+        Set<String> unchangedWikis = new LinkedHashSet<>();
+        if (journaledWikis.isEmpty()) {
+            return unchangedWikis;
+        }
+
+        FarmState farmState = getFarmState();
+        int threads = Math.min(parallelism, journaledWikis.size());
+        if (threads <= 1) {
+            journaledWikis.stream().filter(wikiId -> isUnchanged(wikiId, computeFingerprint(wikiId, farmState)))
+                .forEach(unchangedWikis::add);
+
+            return unchangedWikis;
+        }
+
+        XWikiContext callerContext = this.contextProvider.get();
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+            new BasicThreadFactory.Builder().namingPattern("Wiki Initializer Journal #%d").daemon(true).build());
+        try {
+            Map<String, Future<String>> fingerprints = new LinkedHashMap<>();
+            for (String wikiId : journaledWikis) {
+                fingerprints.put(wikiId, pool.submit(() -> computeFingerprintInContext(wikiId, farmState,
+                    callerContext)));
+            }
+            for (Map.Entry<String, Future<String>> fingerprint : fingerprints.entrySet()) {
+                if (isUnchanged(fingerprint.getKey(), fingerprint.getValue().get())) {
+                    unchangedWikis.add(fingerprint.getKey());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // The remaining wikis are considered changed, i.e. they are initialized.
+        } catch (ExecutionException e) {
+            this.logger.warn("Failed to check the changes of the wikis: {}", e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return unchangedWikis;
+    }
+
+    private boolean isUnchanged(String wikiId, String fingerprint)
+    {
+        String entry = this.entries.get(wikiId);
+
+        return entry != null && fingerprint != null
+            && fingerprint.equals(StringUtils.substringBefore(entry, SEPARATOR));
+    }
+
+    /**
+     * Save the journal in the permanent directory.
+     */
+    public void save()
+    {
+        Properties properties = new Properties();
+        properties.putAll(this.entries);
+
+        this.store.save(STORE_NAME, properties,
+            "Fingerprint and time of the last successful initialization of each wiki");
+    }
+
+    private String computeFingerprintInContext(String wikiId, FarmState farmState, XWikiContext callerContext)
+        throws Exception
+    {
+        ExecutionContext executionContext = new ExecutionContext();
+        callerContext.clone().declareInExecutionContext(executionContext);
+        this.executionContextManager.initialize(executionContext);
+
+        try {
+            return computeFingerprint(wikiId, farmState);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    /**
+     * @return what the fingerprints of every wiki have in common, or {@code null} if it cannot be computed
+     */
+    private FarmState getFarmState()
+    {
+        try {
+            FarmState farmState = new FarmState();
+            // An upgrade of XWiki changes the version expected by the code, which requires the wikis to be migrated.
+            farmState.latestDBVersion = this.dataMigrationManagerProvider.get().getLatestVersion();
+            farmState.environmentExtension = this.coreExtensionRepositoryProvider.get().getEnvironmentExtension();
+            addExtensions(this.installedExtensionRepositoryProvider.get().getInstalledExtensions(null),
+                farmState.extensions);
+
+            return farmState;
+        } catch (Exception e) {
+            this.logger.warn("Failed to compute the fingerprint of the farm: {}", e.getMessage());
+
+            return null;
+        }
+    }
+
+    /**
+     * @return the fingerprint of the wiki, or {@code null} if it cannot be computed
+     */
+    private String computeFingerprint(String wikiId, FarmState farmState)
+    {
+        if (farmState == null) {
+            return null;
+        }
+
+        XWikiContext context = this.contextProvider.get();
+        String previousWikiId = context.getWikiId();
+
+        try {
+            context.setWikiId(wikiId);
+            XWikiDBVersion dbVersion = this.dataMigrationManagerProvider.get().getDBVersion();
+
+            List<String> extensions = new ArrayList<>(farmState.extensions);
+            addExtensions(this.installedExtensionRepositoryProvider.get()
+                .getInstalledExtensions(WIKI_NAMESPACE_PREFIX + wikiId), extensions);
+            extensions.sort(null);
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(dbVersion).getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(farmState.latestDBVersion).getBytes(StandardCharsets.UTF_8));
+            if (farmState.environmentExtension != null) {
+                digest.update(farmState.environmentExtension.getId().toString().getBytes(StandardCharsets.UTF_8));
+            }
+            for (String extension : extensions) {
+                digest.update(extension.getBytes(StandardCharsets.UTF_8));
+            }
+
+            return new BigInteger(1, digest.digest()).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        } catch (Exception e) {
+            this.logger.warn("Failed to compute the fingerprint of wiki [{}]: {}", wikiId, e.getMessage());
+
+            return null;
+        } finally {
+            context.setWikiId(previousWikiId);
+        }
+    }
+
+    private void addExtensions(Collection<InstalledExtension> installedExtensions, List<String> extensions)
+    {
+        for (InstalledExtension installedExtension : installedExtensions) {
+            extensions.add(installedExtension.getId().toString() + '\n');
+        }
+    }
+
+    /**
+     * The part of the fingerprints shared by every wiki.
+     */
+    private static final class FarmState
+    {
+        private XWikiDBVersion latestDBVersion;
+
+        private CoreExtension environmentExtension;
+
+        private final List<String> extensions = new ArrayList<>();
+    }
+}
@@ -19,7 +19,7 @@
  */
 package org.xwiki.contrib.wikiinitializer.internal;
 
-import java.util.Collection;
+import java.util.Collections;
 
 import javax.annotation.Priority;
 import javax.inject.Inject;
@@ -29,21 +29,30 @@ import javax.inject.Singleton;
 
 import org.slf4j.Logger;
 import org.xwiki.bridge.event.ApplicationReadyEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.WikiCreatedEvent;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.wikiinitializer.WikiInitializationException;
 import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
 import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.job.JobException;
+import org.xwiki.job.JobExecutor;
+import org.xwiki.model.reference.LocalDocumentReference;
 import org.xwiki.observation.AbstractEventListener;
 import org.xwiki.observation.event.ApplicationStartedEvent;
+import org.xwiki.observation.event.ApplicationStoppedEvent;
 import org.xwiki.observation.event.Event;
-import org.xwiki.wiki.descriptor.WikiDescriptor;
-import org.xwiki.wiki.descriptor.WikiDescriptorManager;
-import org.xwiki.wiki.manager.WikiManagerException;
+import org.xwiki.observation.event.filter.RegexEventFilter;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
 
 import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.doc.XWikiDocument;
 
 /**
- * Listener that will automatically start the wiki initialization job.
+ * Listener that will automatically start the wiki initialization job, and then initialize the sub-wikis created or
+ * whose descriptor changed, if they should be initialized eagerly, and finally stop the initialization when the
+ * application stops. Since it has the lowest priority, the wiki
+ * descriptors are already up to date when it handles their changes.
  *
  * @version $Id$
  * @since 1.0
@@ -59,6 +68,14 @@ public class WikiInitializationListener extends AbstractEventListener
      */
     public static final String LISTENER_NAME = "WikiInitializationListener";
 
+    private static final String XWIKI_SPACE = "XWiki";
+
+    private static final LocalDocumentReference DESCRIPTOR_CLASS =
+        new LocalDocumentReference(XWIKI_SPACE, "XWikiServerClass");
+
+    private static final LocalDocumentReference DESCRIPTOR_TEMPLATE =
+        new LocalDocumentReference(XWIKI_SPACE, "XWikiServerClassTemplate");
+
     @Inject
     private Logger logger;
 
@@ -66,45 +83,105 @@ public class WikiInitializationListener extends AbstractEventListener
     private Provider<WikiInitializerConfiguration> configurationProvider;
 
     @Inject
-    private Provider<WikiDescriptorManager> wikiDescriptorManagerProvider;
+    private Provider<WikiInitializationManager> wikiInitializationManagerProvider;
+
+    @Inject
+    private Provider<JobExecutor> jobExecutorProvider;
 
     @Inject
-    private Provider<WikiInitializationManager> wikiInitializationManagerProvider;
+    private Provider<WikiRequestReplayer> requestReplayerProvider;
+
+    @Inject
+    private Provider<WikiIdleEvictor> idleEvictorProvider;
+
+    @Inject
+    private Provider<IncrementalWikiInitializer> incrementalInitializerProvider;
+
+    @Inject
+    private Provider<WikiInitializerConfigurationReloader> configurationReloaderProvider;
+
+    @Inject
+    private Provider<WikiInitializationShutdown> shutdownProvider;
+
+    @Inject
+    private Provider<WikiInitializationReadiness> readinessProvider;
+
+    @Inject
+    private RemoteObservationManagerContext remoteObservationManagerContext;
+
+    /**
+     * The changes of wikis are ignored during the startup, where the initialization job takes care of every wiki.
+     */
+    private volatile boolean ready;
 
     /**
      * Create a new {@link WikiInitializationListener}.
      */
     public WikiInitializationListener()
     {
-        super(LISTENER_NAME, new ApplicationStartedEvent(), new ApplicationReadyEvent());
+        super(LISTENER_NAME, new ApplicationStartedEvent(), new ApplicationReadyEvent(), new ApplicationStoppedEvent(),
+            new WikiCreatedEvent(),
+            new DocumentUpdatedEvent(new RegexEventFilter(XWiki.DEFAULT_MAIN_WIKI + ":XWiki\\.XWikiServer.+")));
     }
 
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
+        if (event instanceof ApplicationStoppedEvent) {
+            this.ready = false;
+            shutdownProvider.get().shutdown();
+            return;
+        }
+
         WikiInitializerConfiguration configuration = configurationProvider.get();
-        WikiInitializationManager wikiInitializationManager = wikiInitializationManagerProvider.get();
 
         if (event instanceof ApplicationStartedEvent && configuration.initializeMainWiki()) {
             try {
-                wikiInitializationManager.initialize(null);
+                wikiInitializationManagerProvider.get().initialize(null);
             } catch (WikiInitializationException e) {
                 logger.error("Failed to initialize main wiki", e);
             }
         } else if (event instanceof ApplicationReadyEvent) {
+            idleEvictorProvider.get().start();
+            configurationReloaderProvider.get().start();
+            startSubWikisInitialization(configuration);
+            this.ready = true;
+        } else if (!this.ready || remoteObservationManagerContext.isRemoteState()) {
+            // A change is handled by the cluster node where it was made, and only if the sub-wiki is in its shard.
+            return;
+        } else if (event instanceof WikiCreatedEvent) {
+            incrementalInitializerProvider.get()
+                .initialize(Collections.singleton(((WikiCreatedEvent) event).getWikiId()));
+        } else if (event instanceof DocumentUpdatedEvent && isWikiDescriptor((XWikiDocument) source)) {
+            incrementalInitializerProvider.get().initialize(Collections
+                .singleton(PagedWikiEnumerator.toWikiId(((XWikiDocument) source).getDocumentReference().getName())));
+        }
+    }
+
+    private boolean isWikiDescriptor(XWikiDocument document)
+    {
+        return document.getXObject(DESCRIPTOR_CLASS) != null
+            && !DESCRIPTOR_TEMPLATE.equals(document.getDocumentReference().getLocalDocumentReference());
+    }
+
+    private void startSubWikisInitialization(WikiInitializerConfiguration configuration)
+    {
+        if (configuration.initializeAllSubWikis() || configuration.isLazyInitialization()
+            || (configuration.initializeMainWiki() && configuration.isWarmUpEnabled())
+            || !configuration.getInitializableWikis().isEmpty()
+            || WikiSelector.fromConfiguration(configuration).isSelecting()
+            || requestReplayerProvider.get().isEnabled(configuration)) {
             try {
-                Collection<WikiDescriptor> wikisToInitialize = (configuration.initializeAllSubWikis())
-                    ? wikiDescriptorManagerProvider.get().getAll()
-                    : configuration.getInitializableWikis();
-
-                for (WikiDescriptor descriptor : wikisToInitialize) {
-                    if (!XWiki.DEFAULT_MAIN_WIKI.equals(descriptor.getId())) {
-                        wikiInitializationManager.initialize(descriptor);
-                    }
-                }
-            } catch (WikiManagerException | WikiInitializationException e) {
-                logger.error("Failed to initialize sub-wikis", e);
+                jobExecutorProvider.get().execute(WikiInitializationJob.JOB_TYPE,
+                    new WikiInitializationJobRequest());
+            } catch (JobException e) {
+                logger.error("Failed to start the sub-wikis initialization job", e);
             }
+        } else {
+            // No sub-wiki is initialized eagerly.
+            WikiInitializationReadiness readiness = readinessProvider.get();
+            readiness.startPlan();
+            readiness.completePlan();
         }
     }
 }
@@ -0,0 +1,152 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.management.JMXBeanRegistration;
+
+/**
+ * Collect metrics about the initialization of wikis and expose them over JMX under
+ * {@code org.xwiki:type=WikiInitializer}.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializationMetrics.class)
+@Singleton
+public class WikiInitializationMetrics implements WikiInitializationMetricsMXBean, Initializable, Disposable
+{
+    private static final String MBEAN_NAME = "type=WikiInitializer";
+
+    @Inject
+    private JMXBeanRegistration jmxRegistration;
+
+    private final LongAdder initializedWikiCount = new LongAdder();
+
+    private final LongAdder failedWikiCount = new LongAdder();
+
+    private volatile DurationStatistics wikiInitializationStatistics = new DurationStatistics();
+
+    private final Map<WikiInitializationPhase, DurationStatistics> phaseStatistics =
+        Collections.synchronizedMap(new EnumMap<>(WikiInitializationPhase.class));
+
+    private final Map<String, Long> wikiInitializationTimes = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize()
+    {
+        this.jmxRegistration.registerMBean(this, MBEAN_NAME);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.jmxRegistration.unregisterMBean(MBEAN_NAME);
+    }
+
+    /**
+     * Record the duration of an initialization phase.
+     *
+     * @param phase the phase
+     * @param durationNanos the duration of the phase, in nanoseconds
+     */
+    public void recordPhase(WikiInitializationPhase phase, long durationNanos)
+    {
+        this.phaseStatistics.computeIfAbsent(phase, k -> new DurationStatistics()).record(durationNanos);
+    }
+
+    /**
+     * Record the outcome of the initialization of a wiki.
+     *
+     * @param wikiId the identifier of the wiki
+     * @param durationNanos the duration of the initialization, in nanoseconds
+     * @param success true if the wiki has been successfully initialized
+     */
+    public void recordWikiInitialization(String wikiId, long durationNanos, boolean success)
+    {
+        this.wikiInitializationStatistics.record(durationNanos);
+        this.wikiInitializationTimes.put(wikiId, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+
+        if (success) {
+            this.initializedWikiCount.increment();
+        } else {
+            this.failedWikiCount.increment();
+        }
+    }
+
+    @Override
+    public long getInitializedWikiCount()
+    {
+        return this.initializedWikiCount.sum();
+    }
+
+    @Override
+    public long getFailedWikiCount()
+    {
+        return this.failedWikiCount.sum();
+    }
+
+    @Override
+    public DurationStatistics getWikiInitializationStatistics()
+    {
+        return this.wikiInitializationStatistics;
+    }
+
+    @Override
+    public Map<String, DurationStatistics> getPhaseStatistics()
+    {
+        Map<String, DurationStatistics> statistics = new LinkedHashMap<>();
+        synchronized (this.phaseStatistics) {
+            this.phaseStatistics.forEach((phase, phaseStatistic) -> statistics.put(phase.getId(), phaseStatistic));
+        }
+
+        return statistics;
+    }
+
+    @Override
+    public Map<String, Long> getWikiInitializationTimes()
+    {
+        return new LinkedHashMap<>(this.wikiInitializationTimes);
+    }
+
+    @Override
+    public void reset()
+    {
+        this.initializedWikiCount.reset();
+        this.failedWikiCount.reset();
+        this.wikiInitializationStatistics = new DurationStatistics();
+        this.phaseStatistics.clear();
+        this.wikiInitializationTimes.clear();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Map;
+
+/**
+ * JMX interface exposing metrics about the initialization of wikis.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public interface WikiInitializationMetricsMXBean
+{
+    /**
+     * @return the number of wikis that have been successfully initialized
+     */
+    long getInitializedWikiCount();
+
+    /**
+     * @return the number of wikis that could not be initialized
+     */
+    long getFailedWikiCount();
+
+    /**
+     * @return statistics about the whole initialization of each wiki, main wiki included
+     */
+    DurationStatistics getWikiInitializationStatistics();
+
+    /**
+     * @return statistics about each initialization phase, indexed by phase identifier
+     */
+    Map<String, DurationStatistics> getPhaseStatistics();
+
+    /**
+     * @return the duration of the last initialization of each wiki, in milliseconds, indexed by wiki identifier
+     */
+    Map<String, Long> getWikiInitializationTimes();
+
+    /**
+     * Reset every metric.
+     */
+    void reset();
+}
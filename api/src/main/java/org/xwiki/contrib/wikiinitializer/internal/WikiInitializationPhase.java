@@ -0,0 +1,76 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+/**
+ * The phases of the initialization of a wiki that are measured.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public enum WikiInitializationPhase
+{
+    /**
+     * Preparation of the {@link com.xpn.xwiki.XWikiContext} of the main wiki.
+     */
+    PREPARE_CONTEXT("prepareContext"),
+
+    /**
+     * Initialization of the request, response and session through the
+     * {@link org.xwiki.container.servlet.ServletContainerInitializer}.
+     */
+    INITIALIZE_CONTAINER("initializeContainer"),
+
+    /**
+     * Creation of the {@link com.xpn.xwiki.XWiki} instance of the main wiki.
+     */
+    GET_XWIKI("getXWiki"),
+
+    /**
+     * Notification of the distribution wizard, including the wait for the initialization of XWiki, done in the
+     * background.
+     */
+    DISTRIBUTION("distribution"),
+
+    /**
+     * Initialization of a sub-wiki through {@link com.xpn.xwiki.XWiki#initializeWiki}.
+     */
+    INITIALIZE_WIKI("initializeWiki"),
+
+    /**
+     * Warm up of the caches of an initialized wiki.
+     */
+    WARM_UP("warmUp");
+
+    private final String id;
+
+    WikiInitializationPhase(String id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * @return the identifier of the phase, as displayed in the metrics
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+}
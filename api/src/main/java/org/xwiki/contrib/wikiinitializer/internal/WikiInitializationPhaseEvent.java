@@ -0,0 +1,98 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event covering one {@link WikiInitializationPhase} of the initialization of a wiki, nested in
+ * the {@link WikiInitializationEvent} of the wiki.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Name(WikiInitializationPhaseEvent.NAME)
+@Label("Wiki Initialization Phase")
+@Category({ "XWiki", "Wiki Initializer" })
+@Description("A phase of the initialization of a wiki")
+public class WikiInitializationPhaseEvent extends Event
+{
+    /**
+     * The name of the event.
+     */
+    public static final String NAME = "org.xwiki.contrib.wikiinitializer.WikiInitializationPhase";
+
+    @Label("Wiki")
+    private final String wikiId;
+
+    @Label("Phase")
+    private final String phase;
+
+    @Label("Success")
+    private boolean success;
+
+    @Label("Failure")
+    private String failure;
+
+    /**
+     * @param wikiId the identifier of the wiki being initialized
+     * @param phase the phase of the initialization
+     */
+    public WikiInitializationPhaseEvent(String wikiId, WikiInitializationPhase phase)
+    {
+        this.wikiId = wikiId;
+        this.phase = phase.getId();
+    }
+
+    /**
+     * End the event and commit it if enabled.
+     *
+     * @param error the error that made the phase fail, or {@code null} if it succeeded
+     */
+    public void complete(Throwable error)
+    {
+        end();
+        if (shouldCommit()) {
+            this.success = error == null;
+            this.failure = (error != null) ? error.toString() : null;
+            commit();
+        }
+    }
+
+    /**
+     * @return the identifier of the wiki being initialized
+     */
+    public String getWikiId()
+    {
+        return this.wikiId;
+    }
+
+    /**
+     * @return the identifier of the phase
+     */
+    public String getPhase()
+    {
+        return this.phase;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationScheduling;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+/**
+ * Order the sub-wikis to initialize. The wikis explicitly listed in
+ * {@link WikiInitializerConfiguration#getPriorityWikis()} always come first, in the configured order. The other
+ * wikis are then sorted according to {@link WikiInitializerConfiguration#getScheduling()}:
+ * <ul>
+ * <li>{@link WikiInitializationScheduling#PRIORITY}: by decreasing number of recorded accesses, so that the most used
+ * wikis are ready first</li>
+ * <li>{@link WikiInitializationScheduling#LONGEST_FIRST}: by decreasing duration of their last initialization, which
+ * is the "longest processing time first" heuristic minimizing the total initialization time when the wikis are
+ * processed by a pool of workers; wikis never initialized before are assumed to take the average known duration</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializationPrioritizer.class)
+@Singleton
+public class WikiInitializationPrioritizer
+{
+    @Inject
+    private WikiAccessTracker accessTracker;
+
+    @Inject
+    private WikiInitializationHistory history;
+
+    /**
+     * @param descriptors the descriptors of the wikis to initialize
+     * @param configuration the configuration defining the priority wikis
+     * @return the descriptors in the order in which the wikis should be initialized
+     */
+    public List<WikiDescriptor> prioritize(Collection<WikiDescriptor> descriptors,
+        WikiInitializerConfiguration configuration)
+    {
+        Map<String, Integer> priorities = new HashMap<>();
+        List<String> priorityWikis = configuration.getPriorityWikis();
+        for (int i = 0; i < priorityWikis.size(); i++) {
+            priorities.putIfAbsent(priorityWikis.get(i), i);
+        }
+
+        // Compute the sort keys once, the sort being stable for wikis with the same priority and key.
+        Map<String, Long> keys = (configuration.getScheduling() == WikiInitializationScheduling.LONGEST_FIRST)
+            ? getExpectedDurations(descriptors) : getAccessCounts(descriptors);
+
+        List<WikiDescriptor> prioritized = new ArrayList<>(descriptors);
+        prioritized.sort(Comparator
+            .<WikiDescriptor>comparingInt(descriptor -> priorities.getOrDefault(descriptor.getId(), Integer.MAX_VALUE))
+            .thenComparing(descriptor -> keys.get(descriptor.getId()), Comparator.reverseOrder()));
+
+        return prioritized;
+    }
+
+    private Map<String, Long> getAccessCounts(Collection<WikiDescriptor> descriptors)
+    {
+        Map<String, Long> accessCounts = new HashMap<>();
+        descriptors.forEach(
+            descriptor -> accessCounts.put(descriptor.getId(), this.accessTracker.getAccessCount(descriptor.getId())));
+
+        return accessCounts;
+    }
+
+    private Map<String, Long> getExpectedDurations(Collection<WikiDescriptor> descriptors)
+    {
+        Map<String, Long> durations = new HashMap<>();
+        long knownTotal = 0;
+        int knownCount = 0;
+        for (WikiDescriptor descriptor : descriptors) {
+            long duration = this.history.getLastDuration(descriptor.getId());
+            durations.put(descriptor.getId(), duration);
+            if (duration >= 0) {
+                knownTotal += duration;
+                knownCount++;
+            }
+        }
+
+        long average = (knownCount > 0) ? knownTotal / knownCount : 0;
+        durations.replaceAll((wikiId, duration) -> (duration >= 0) ? duration : average);
+
+        return durations;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationState;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.job.Job;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.internal.XWikiInitializerJob;
+
+/**
+ * Tell whether enough wikis are initialized for the node to serve its traffic at full speed. The node is ready when
+ * the main wiki (if it is initialized by the Wiki Initializer) is initialized and XWiki is done initializing, the
+ * configured readiness sub-wikis and the configured
+ * percentage of the sub-wikis planned for an eager initialization on this node are initialized. The planned sub-wikis
+ * are reported by the sub-wikis initialization job: they exclude the sub-wikis that are not selected, owned by
+ * other cluster nodes or left to their first access. When they are enumerated page by page, the percentage is only
+ * reached once every page has been planned.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializationReadiness.class)
+@Singleton
+public class WikiInitializationReadiness
+{
+    private static final int MAX_PERCENTAGE = 100;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    private Provider<WikiInitializationManager> wikiInitializationManagerProvider;
+
+    @Inject
+    private Provider<WikiDescriptorManager> wikiDescriptorManagerProvider;
+
+    @Inject
+    @Named(XWikiInitializerJob.JOBTYPE)
+    private Provider<Job> xwikiInitializerJobProvider;
+
+    private volatile Set<String> plannedWikis;
+
+    private volatile boolean planComplete;
+
+    /**
+     * Start a new plan of the sub-wikis to initialize eagerly on this node, replacing the previous one.
+     */
+    public void startPlan()
+    {
+        this.planComplete = false;
+        this.plannedWikis = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * @param wikiIds the identifiers of sub-wikis planned for an eager initialization on this node
+     */
+    public void addPlannedWikis(Collection<String> wikiIds)
+    {
+        Set<String> wikis = this.plannedWikis;
+        if (wikis != null) {
+            wikis.addAll(wikiIds);
+        }
+    }
+
+    /**
+     * Tell that every sub-wiki to initialize eagerly on this node has been planned.
+     */
+    public void completePlan()
+    {
+        if (this.plannedWikis != null) {
+            this.planComplete = true;
+        }
+    }
+
+    /**
+     * @return true if the node is ready to serve its traffic
+     */
+    public boolean isReady()
+    {
+        WikiInitializerConfiguration configuration = this.configurationProvider.get();
+        WikiInitializationManager manager = this.wikiInitializationManagerProvider.get();
+
+        if (configuration.initializeMainWiki() && getMainWikiState(manager) != WikiInitializationState.INITIALIZED) {
+            return false;
+        }
+
+        if (!configuration.getReadinessWikis().stream().allMatch(manager::isInitialized)) {
+            return false;
+        }
+
+        if (configuration.getReadinessPercentage() > 0) {
+            Set<String> wikis = this.plannedWikis;
+            if (wikis == null || !this.planComplete) {
+                return false;
+            }
+
+            long initializedWikis = wikis.stream().filter(manager::isInitialized).count();
+
+            return initializedWikis * MAX_PERCENTAGE >= (long) configuration.getReadinessPercentage() * wikis.size();
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the initialization state of the main wiki and of the configured readiness sub-wikis, indexed by wiki
+     *         identifier
+     */
+    public Map<String, WikiInitializationState> getReadinessStates()
+    {
+        WikiInitializationManager manager = this.wikiInitializationManagerProvider.get();
+
+        Map<String, WikiInitializationState> states = new LinkedHashMap<>();
+        states.put(XWiki.DEFAULT_MAIN_WIKI, getMainWikiState(manager));
+        for (String wikiId : this.configurationProvider.get().getReadinessWikis()) {
+            states.put(wikiId, manager.getState(wikiId));
+        }
+
+        return states;
+    }
+
+    private WikiInitializationState getMainWikiState(WikiInitializationManager manager)
+    {
+        WikiInitializationState state = manager.getState(XWiki.DEFAULT_MAIN_WIKI);
+
+        // The main wiki is initialized as soon as the initialization of XWiki is started, which then goes on in the
+        // background (database migrations, extensions, etc.).
+        if (state == WikiInitializationState.INITIALIZED && !isXWikiInitialized()) {
+            return WikiInitializationState.INITIALIZING;
+        }
+
+        return state;
+    }
+
+    private boolean isXWikiInitialized()
+    {
+        JobStatus status = this.xwikiInitializerJobProvider.get().getStatus();
+
+        return status != null && status.getState() == JobStatus.State.FINISHED;
+    }
+
+    /**
+     * @return the initialization state of every wiki, indexed by wiki identifier
+     * @throws WikiManagerException if the wikis cannot be listed
+     */
+    public Map<String, WikiInitializationState> getStates() throws WikiManagerException
+    {
+        WikiInitializationManager manager = this.wikiInitializationManagerProvider.get();
+
+        Map<String, WikiInitializationState> states = new LinkedHashMap<>();
+        for (String wikiId : this.wikiDescriptorManagerProvider.get().getAllIds()) {
+            states.put(wikiId,
+                XWiki.DEFAULT_MAIN_WIKI.equals(wikiId) ? getMainWikiState(manager) : manager.getState(wikiId));
+        }
+
+        return states;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+
+/**
+ * Partition the sub-wikis to initialize among the nodes of a cluster with consistent hashing, so that each node only
+ * initializes its own shard eagerly and the other sub-wikis are left to be initialized on their first access. The
+ * nodes are either listed in the configuration or discovered through a lease file shared by the nodes.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializationSharding.class)
+@Singleton
+public class WikiInitializationSharding implements Disposable
+{
+    private static final String DEFAULT_NODE_ID = "localhost";
+
+    private static final String THREAD_NAME = "Wiki Initializer Lease Renewal";
+
+    private static final int RENEWALS_PER_LEASE = 3;
+
+    /**
+     * The maximum time to wait, in milliseconds, for the nodes starting at the same time to register their lease.
+     */
+    private static final long JOIN_DELAY = 10000L;
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    private ScheduledExecutorService leaseRenewal;
+
+    private String nodeId;
+
+    private Set<String> staticNodes;
+
+    private volatile Set<String> members;
+
+    private volatile ConsistentHashRing ring;
+
+    @Override
+    public synchronized void dispose()
+    {
+        if (this.leaseRenewal != null) {
+            this.leaseRenewal.shutdownNow();
+        }
+    }
+
+    /**
+     * @param configuration the configuration of the Wiki Initializer
+     * @return true if the sub-wikis should be partitioned among the nodes of a cluster
+     */
+    public boolean isEnabled(WikiInitializerConfiguration configuration)
+    {
+        return !configuration.getClusterNodes().isEmpty() || configuration.getClusterLeaseFile() != null;
+    }
+
+    /**
+     * Get the shard of the current node. The members of the cluster are computed on the first call: when they are
+     * discovered through a lease file, the current node registers its lease and waits a bit before reading the
+     * members again, so that the nodes starting together see each other. The leases are then renewed in the
+     * background, which also updates the members used by the returned predicate: a node joining later takes over its
+     * part of the sub-wikis which are not initialized yet (the ones already initialized by another node are not
+     * affected), while the sub-wikis of a node leaving the cluster are initialized on their first access. A node
+     * which is not one of the configured nodes doesn't partition the sub-wikis.
+     *
+     * @return a predicate telling if the sub-wiki with the given identifier belongs to the shard of the current node
+     */
+    public Predicate<String> getLocalShard()
+    {
+        WikiInitializerConfiguration configuration = this.configurationProvider.get();
+        if (!isEnabled(configuration)) {
+            return wikiId -> true;
+        }
+
+        synchronized (this) {
+            if (this.nodeId == null) {
+                joinCluster(configuration);
+            }
+        }
+
+        if (this.ring == null) {
+            // The current node is not part of the configured cluster.
+            return wikiId -> true;
+        }
+
+        return wikiId -> this.nodeId.equals(this.ring.getNode(wikiId));
+    }
+
+    private void joinCluster(WikiInitializerConfiguration configuration)
+    {
+        this.nodeId = getLocalNodeId(configuration);
+        this.staticNodes = new TreeSet<>(configuration.getClusterNodes());
+        if (!this.staticNodes.isEmpty() && !this.staticNodes.contains(this.nodeId)) {
+            // Adding the node to the ring would make the other nodes miss the sub-wikis it takes over.
+            this.logger.error("Node [{}] is not one of the configured cluster nodes {}, it initializes every sub-wiki"
+                + " instead of its shard: please check the cluster node identifier", this.nodeId, this.staticNodes);
+            return;
+        }
+
+        Set<String> nodes = this.staticNodes;
+        if (configuration.getClusterLeaseFile() != null) {
+            Path leaseFile = Paths.get(configuration.getClusterLeaseFile());
+            Duration leaseDuration = configuration.getClusterLeaseDuration();
+            long period = Math.max(1L, leaseDuration.toMillis() / RENEWALS_PER_LEASE);
+
+            // Register the lease of the current node, then give the nodes starting at the same time the opportunity to
+            // register theirs.
+            renewLease(leaseFile, leaseDuration);
+            try {
+                Thread.sleep(Math.min(period, JOIN_DELAY));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            nodes = renewLease(leaseFile, leaseDuration);
+
+            startLeaseRenewal(leaseFile, leaseDuration, period);
+        }
+
+        this.members = nodes;
+        this.ring = new ConsistentHashRing(nodes);
+
+        this.logger.info("Node [{}] initializes its shard of the sub-wikis among the nodes {}", this.nodeId, nodes);
+    }
+
+    private String getLocalNodeId(WikiInitializerConfiguration configuration)
+    {
+        if (configuration.getClusterNodeId() != null) {
+            return configuration.getClusterNodeId();
+        }
+
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            this.logger.warn("Failed to get the host name, please configure the cluster node identifier: {}",
+                e.getMessage());
+
+            return DEFAULT_NODE_ID;
+        }
+    }
+
+    private void startLeaseRenewal(Path leaseFile, Duration leaseDuration, long period)
+    {
+        this.leaseRenewal = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern(THREAD_NAME).daemon(true).build());
+
+        this.leaseRenewal.scheduleAtFixedRate(() -> updateMembers(renewLease(leaseFile, leaseDuration)), period,
+            period, TimeUnit.MILLISECONDS);
+    }
+
+    private void updateMembers(Set<String> nodes)
+    {
+        if (!nodes.equals(this.members)) {
+            this.logger.info("The nodes initializing the sub-wikis changed from {} to {}", this.members, nodes);
+
+            this.members = nodes;
+            this.ring = new ConsistentHashRing(nodes);
+        }
+    }
+
+    /**
+     * @return the nodes whose lease is still valid and the configured nodes, or only the configured nodes if the lease
+     *         file cannot be accessed
+     */
+    private Set<String> renewLease(Path leaseFile, Duration leaseDuration)
+    {
+        Set<String> nodes = new TreeSet<>(this.staticNodes);
+        try {
+            nodes.addAll(writeLease(leaseFile, leaseDuration));
+        } catch (IOException e) {
+            this.logger.warn("Failed to renew the cluster lease in [{}]: {}", leaseFile, e.getMessage());
+        }
+
+        return nodes;
+    }
+
+    /**
+     * @return the nodes whose lease is still valid, including the current one
+     */
+    private Set<String> writeLease(Path leaseFile, Duration leaseDuration) throws IOException
+    {
+        if (leaseFile.getParent() != null) {
+            Files.createDirectories(leaseFile.getParent());
+        }
+
+        try (FileChannel channel = FileChannel.open(leaseFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE); FileLock lock = channel.lock()) {
+            ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // Read the whole file
+            }
+
+            Properties leases = new Properties();
+            leases.load(new ByteArrayInputStream(content.array()));
+
+            long now = System.currentTimeMillis();
+            leases.setProperty(this.nodeId, String.valueOf(now));
+            leases.stringPropertyNames().stream()
+                .filter(node -> now - NumberUtils.toLong(leases.getProperty(node)) > leaseDuration.toMillis())
+                .forEach(leases::remove);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            leases.store(output, "Wiki Initializer cluster leases");
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(output.toByteArray()), 0);
+
+            return leases.stringPropertyNames();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobExecutor;
+import org.xwiki.job.event.status.CancelableJobStatus;
+import org.xwiki.job.event.status.JobStatus;
+
+/**
+ * Stop the initialization of the sub-wikis when the application stops, so that the time needed to stop a node
+ * doesn't depend on the number of sub-wikis: no new sub-wiki is initialized, and the initializations in progress are
+ * interrupted if they are not done at the end of the configured grace period. The grace period is awaited in the
+ * background so that it doesn't hold up the rest of the application stop.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializationShutdown.class)
+@Singleton
+public class WikiInitializationShutdown implements Disposable
+{
+    private static final String THREAD_NAME = "Wiki Initializer Shutdown";
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    private Provider<JobExecutor> jobExecutorProvider;
+
+    @Inject
+    private WikiInitializationExecutor executor;
+
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    @Override
+    public void dispose()
+    {
+        shutdown();
+    }
+
+    /**
+     * Stop the initialization of the sub-wikis: the job is canceled and no new initialization starts, while the ones
+     * in progress are interrupted in the background at the end of the configured grace period. Only the first call
+     * has an effect.
+     */
+    public void shutdown()
+    {
+        if (!this.stopped.compareAndSet(false, true)) {
+            return;
+        }
+
+        Duration gracePeriod = this.configurationProvider.get().getShutdownGracePeriod();
+
+        Job job = getRunningJob();
+        if (job != null && job.getStatus() instanceof CancelableJobStatus) {
+            ((CancelableJobStatus) job.getStatus()).cancel();
+        }
+        this.executor.stop();
+
+        new BasicThreadFactory.Builder().namingPattern(THREAD_NAME).daemon(true).build()
+            .newThread(() -> awaitStop(job, gracePeriod)).start();
+    }
+
+    private void awaitStop(Job job, Duration gracePeriod)
+    {
+        long deadline = System.nanoTime() + gracePeriod.toNanos();
+
+        try {
+            boolean done = this.executor.awaitInitializations(getRemainingTime(deadline));
+            if (job != null) {
+                long remainingMillis = getRemainingTime(deadline).toMillis();
+                done &= (remainingMillis > 0) ? job.join(remainingMillis, TimeUnit.MILLISECONDS)
+                    : job.getStatus().getState() == JobStatus.State.FINISHED;
+            }
+
+            if (!done) {
+                this.logger.warn("The sub-wikis initialization didn't stop within [{}] s, interrupting it",
+                    gracePeriod.getSeconds());
+                interrupt(job);
+            }
+        } catch (InterruptedException e) {
+            interrupt(job);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Job getRunningJob()
+    {
+        Job job = this.jobExecutorProvider.get().getJob(WikiInitializationManager.SUBWIKIS_INITIALIZATION_JOB_ID);
+
+        return (job != null && job.getStatus().getState() != JobStatus.State.FINISHED) ? job : null;
+    }
+
+    private void interrupt(Job job)
+    {
+        this.executor.interrupt();
+        if (job instanceof WikiInitializationJob) {
+            ((WikiInitializationJob) job).interrupt();
+        }
+    }
+
+    private Duration getRemainingTime(long deadline)
+    {
+        return Duration.ofNanos(Math.max(0L, deadline - System.nanoTime()));
+    }
+}
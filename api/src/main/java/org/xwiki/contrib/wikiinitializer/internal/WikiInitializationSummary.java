@@ -0,0 +1,165 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of the outcome of the initialization of a set of sub-wikis. Instances of this class can be safely
+ * updated from several threads.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public class WikiInitializationSummary
+{
+    private final List<String> initializedWikis = new CopyOnWriteArrayList<>();
+
+    private final Map<String, Throwable> failedWikis = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    private final List<String> skippedWikis = new CopyOnWriteArrayList<>();
+
+    private final long startTime = System.currentTimeMillis();
+
+    private long endTime;
+
+    private volatile List<String> criticalPath = Collections.emptyList();
+
+    private volatile long criticalPathDuration;
+
+    /**
+     * Record the successful initialization of a wiki.
+     *
+     * @param wikiId the identifier of the wiki that has been initialized
+     */
+    public void addInitializedWiki(String wikiId)
+    {
+        this.initializedWikis.add(wikiId);
+    }
+
+    /**
+     * Record the failed initialization of a wiki.
+     *
+     * @param wikiId the identifier of the wiki that could not be initialized
+     * @param cause the reason of the failure
+     */
+    public void addFailedWiki(String wikiId, Throwable cause)
+    {
+        this.failedWikis.put(wikiId, cause);
+    }
+
+    /**
+     * Record a wiki whose initialization has not been attempted, or has been abandoned, because the initialization
+     * was canceled.
+     *
+     * @param wikiId the identifier of the skipped wiki
+     */
+    public void addSkippedWiki(String wikiId)
+    {
+        this.skippedWikis.add(wikiId);
+    }
+
+    /**
+     * Record the critical path of the dependencies between the wikis, if it's longer than the one recorded so far.
+     *
+     * @param path the identifiers of the wikis on the critical path
+     * @param expectedDuration the expected time needed to initialize the wikis on the critical path, in milliseconds
+     */
+    public synchronized void setCriticalPath(List<String> path, long expectedDuration)
+    {
+        if (expectedDuration > this.criticalPathDuration) {
+            this.criticalPath = Collections.unmodifiableList(new ArrayList<>(path));
+            this.criticalPathDuration = expectedDuration;
+        }
+    }
+
+    /**
+     * Mark the end of the initialization.
+     */
+    public void end()
+    {
+        this.endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the identifiers of the wikis that have been successfully initialized
+     */
+    public List<String> getInitializedWikis()
+    {
+        return Collections.unmodifiableList(this.initializedWikis);
+    }
+
+    /**
+     * @return the identifiers of the wikis that could not be initialized, associated with the cause of the failure
+     */
+    public Map<String, Throwable> getFailedWikis()
+    {
+        synchronized (this.failedWikis) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(this.failedWikis));
+        }
+    }
+
+    /**
+     * @return the identifiers of the wikis that have been skipped
+     */
+    public List<String> getSkippedWikis()
+    {
+        return Collections.unmodifiableList(this.skippedWikis);
+    }
+
+    /**
+     * @return the identifiers of the wikis on the longest chain of dependencies, which bounds the time needed to
+     *         initialize the wikis whatever the parallelism, or an empty list if the wikis don't depend on each other
+     */
+    public List<String> getCriticalPath()
+    {
+        return this.criticalPath;
+    }
+
+    /**
+     * @return the expected time needed to initialize the wikis on the critical path, in milliseconds
+     */
+    public long getCriticalPathDuration()
+    {
+        return this.criticalPathDuration;
+    }
+
+    /**
+     * @return the time spent initializing the wikis, in milliseconds
+     */
+    public long getDuration()
+    {
+        return ((this.endTime > 0) ? this.endTime : System.currentTimeMillis()) - this.startTime;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "[%d] wikis initialized, [%d] failed and [%d] skipped in [%d] ms (failed wikis: %s, skipped wikis: %s)",
+            this.initializedWikis.size(), this.failedWikis.size(), this.skippedWikis.size(), getDuration(),
+            getFailedWikis().keySet(), this.skippedWikis);
+    }
+}
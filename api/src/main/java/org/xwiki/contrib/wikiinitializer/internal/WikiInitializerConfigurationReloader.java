@@ -0,0 +1,249 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.configuration2.builder.FileBasedConfigurationBuilder;
+import org.apache.commons.configuration2.builder.fluent.Parameters;
+import org.apache.commons.configuration2.convert.DefaultListDelimiterHandler;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.environment.Environment;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+/**
+ * Watch {@code xwiki.properties} and initialize the sub-wikis newly listed in
+ * {@code wikiInitializer.initializableSubWikis} when it changes. The configuration itself is not reloaded: like the
+ * rest of the XWiki configuration, the other changes require a restart.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializerConfigurationReloader.class)
+@Singleton
+public class WikiInitializerConfigurationReloader implements Disposable
+{
+    private static final String CONFIGURATION_FILE = "/WEB-INF/xwiki.properties";
+
+    private static final String THREAD_NAME = "Wiki Initializer Configuration Reload";
+
+    private static final char LIST_DELIMITER = ',';
+
+    /**
+     * Time to wait after a change of the file before reloading it, so that an editor saving it in several steps
+     * triggers a single reload of the complete file.
+     */
+    private static final long RELOAD_DELAY = 1000L;
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private IncrementalWikiInitializer incrementalInitializer;
+
+    private ExecutorService watcher;
+
+    /**
+     * The sub-wikis listed in the configuration file when it was last read, only accessed by the watcher thread
+     * once it's started.
+     */
+    private Set<String> listedWikis;
+
+    @Override
+    public synchronized void dispose()
+    {
+        if (this.watcher != null) {
+            this.watcher.shutdownNow();
+        }
+    }
+
+    /**
+     * Start watching the configuration file, if it's on the file system.
+     */
+    public synchronized void start()
+    {
+        if (this.watcher != null) {
+            return;
+        }
+
+        Path file = getConfigurationFile();
+        if (file != null) {
+            // The changes are detected against the file itself, whatever the startup configuration was read from.
+            try {
+                this.listedWikis = new HashSet<>(readListedWikis(file));
+            } catch (ConfigurationException e) {
+                this.logger.warn("Failed to read the configuration file [{}]: {}", file, e.getMessage());
+                this.listedWikis = this.configurationProvider.get().getInitializableWikis().stream()
+                    .map(WikiDescriptor::getId).collect(Collectors.toSet());
+            }
+
+            this.watcher = Executors.newSingleThreadExecutor(
+                new BasicThreadFactory.Builder().namingPattern(THREAD_NAME).daemon(true).build());
+            this.watcher.execute(() -> watch(file));
+        }
+    }
+
+    private Path getConfigurationFile()
+    {
+        try {
+            URL url = this.environment.getResource(CONFIGURATION_FILE);
+            if (url != null && "file".equals(url.getProtocol())) {
+                return Paths.get(url.toURI());
+            }
+        } catch (URISyntaxException e) {
+            this.logger.debug("Invalid configuration file location", e);
+        }
+
+        this.logger.debug("The configuration file is not on the file system, it won't be reloaded on change");
+
+        return null;
+    }
+
+    private void watch(Path file)
+    {
+        Path directory = file.getParent();
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed =
+                    key.pollEvents().stream().anyMatch(event -> file.getFileName().equals(event.context()));
+                key.reset();
+
+                if (changed) {
+                    Thread.sleep(RELOAD_DELAY);
+                    // Ignore the changes made while waiting, they are part of the reloaded file.
+                    for (WatchKey pendingKey = watchService.poll(); pendingKey != null;
+                        pendingKey = watchService.poll()) {
+                        pendingKey.pollEvents();
+                        pendingKey.reset();
+                    }
+
+                    reload(file);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            this.logger.warn("Failed to watch the configuration file [{}], it won't be reloaded on change: {}", file,
+                e.getMessage());
+        }
+    }
+
+    private void reload(Path file)
+    {
+        List<String> wikiIds;
+        try {
+            wikiIds = readListedWikis(file);
+        } catch (ConfigurationException e) {
+            this.logger.warn("Failed to reload the configuration file [{}]: {}", file, e.getMessage());
+            return;
+        }
+
+        List<String> addedWikiIds =
+            wikiIds.stream().filter(wikiId -> !this.listedWikis.contains(wikiId)).collect(Collectors.toList());
+        this.listedWikis = new HashSet<>(wikiIds);
+
+        this.logger.info("Reloaded the list of the sub-wikis to initialize from [{}]", file);
+
+        if (!addedWikiIds.isEmpty()) {
+            initialize(addedWikiIds);
+        }
+    }
+
+    /**
+     * Read the sub-wikis listed in the configuration file, with the syntax supported by the XWiki configuration
+     * (repeated keys, comma separated values and interpolation).
+     */
+    private List<String> readListedWikis(Path file) throws ConfigurationException
+    {
+        FileBasedConfigurationBuilder<PropertiesConfiguration> builder =
+            new FileBasedConfigurationBuilder<>(PropertiesConfiguration.class).configure(new Parameters().properties()
+                .setFile(file.toFile()).setEncoding(StandardCharsets.UTF_8.name())
+                .setListDelimiterHandler(new DefaultListDelimiterHandler(LIST_DELIMITER)));
+
+        return builder.getConfiguration()
+            .getList(String.class, WikiInitializerConfigurationSnapshot.KEY_INITIALIZABLE_SUB_WIKIS,
+                Collections.emptyList())
+            .stream().map(String::trim).filter(StringUtils::isNotEmpty).collect(Collectors.toList());
+    }
+
+    private void initialize(List<String> wikiIds)
+    {
+        // The initialization of the sub-wikis needs an XWiki context.
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+        } catch (ExecutionContextException e) {
+            this.logger.warn("Failed to initialize the sub-wikis added to the configuration: {}", e.getMessage());
+            return;
+        }
+
+        try {
+            this.incrementalInitializer.initializeListedWikis(wikiIds);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+}
@@ -0,0 +1,852 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.Cookie;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationScheduling;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+/**
+ * Immutable view of the Wiki Initializer configuration, resolved once from a {@link ConfigurationSource}. Deprecated
+ * configuration keys are resolved (and reported) when the snapshot is loaded, not every time a value is read.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public final class WikiInitializerConfigurationSnapshot
+{
+    private static final String CONTEXT_PATH = "contextPath";
+
+    private static final String COOKIES = "cookies";
+
+    private static final String DOT = ".";
+
+    private static final String HEADERS = "headers";
+
+    private static final String PARAMETERS = "parameters";
+
+    private static final String REMOTE_ADDR = "remoteAddress";
+
+    private static final String URL = "url";
+
+    private static final String XWIKI = "xwiki";
+
+    private static final String CONFIGURATION_PREFIX = "wikiInitializer.";
+
+    private static final String INITIAL_REQUEST_PREFIX = CONFIGURATION_PREFIX + "initialRequest.";
+
+    private static final String KEY_INITIALIZE_MAIN_WIKI = CONFIGURATION_PREFIX + "initializeMainWiki";
+
+    private static final String KEY_INITIALIZE_SUB_WIKIS = CONFIGURATION_PREFIX + "initializeSubWikis";
+
+    private static final String KEY_START_DISTRIBUTION_WIZARD_ON_INIT = CONFIGURATION_PREFIX
+        + "startDistributionWizardOnInit";
+
+    /**
+     * The key of the list of the sub-wikis to initialize when not initializing all of them.
+     */
+    static final String KEY_INITIALIZABLE_SUB_WIKIS = CONFIGURATION_PREFIX + "initializableSubWikis";
+
+    private static final String KEY_PARALLELISM = CONFIGURATION_PREFIX + "parallelism";
+
+    private static final String KEY_TIMEOUT = CONFIGURATION_PREFIX + "timeout";
+
+    private static final String KEY_MAX_RETRIES = CONFIGURATION_PREFIX + "maxRetries";
+
+    private static final String KEY_RETRY_DELAY = CONFIGURATION_PREFIX + "retryDelay";
+
+    private static final long DEFAULT_RETRY_DELAY = 1L;
+
+    private static final String KEY_ACCESS_TRACKING = CONFIGURATION_PREFIX + "accessTracking";
+
+    private static final String KEY_PRIORITY_WIKIS = CONFIGURATION_PREFIX + "priorityWikis";
+
+    private static final String KEY_SCHEDULING = CONFIGURATION_PREFIX + "scheduling";
+
+    private static final String KEY_LAZY = CONFIGURATION_PREFIX + "lazy";
+
+    private static final String KEY_WARM_UP = CONFIGURATION_PREFIX + "warmUp";
+
+    private static final String KEY_WARM_UP_DOCUMENTS = CONFIGURATION_PREFIX + "warmUp.documents";
+
+    private static final String KEY_WARM_UP_SPACES = CONFIGURATION_PREFIX + "warmUp.spaces";
+
+    private static final String KEY_WARM_UP_CONCURRENCY = CONFIGURATION_PREFIX + "warmUp.concurrency";
+
+    private static final String KEY_REPLAY_URLS = CONFIGURATION_PREFIX + "replay.urls";
+
+    private static final String KEY_REPLAY_ACCESS_LOG = CONFIGURATION_PREFIX + "replay.accessLog";
+
+    private static final String KEY_REPLAY_ACCESS_LOG_SIZE = CONFIGURATION_PREFIX + "replay.accessLogSize";
+
+    private static final int DEFAULT_REPLAY_ACCESS_LOG_SIZE = 20;
+
+    private static final String KEY_REPLAY_ITERATIONS = CONFIGURATION_PREFIX + "replay.iterations";
+
+    private static final String KEY_REPLAY_PARALLELISM = CONFIGURATION_PREFIX + "replay.parallelism";
+
+    private static final String KEY_READINESS_WIKIS = CONFIGURATION_PREFIX + "readiness.wikis";
+
+    private static final String KEY_READINESS_PERCENTAGE = CONFIGURATION_PREFIX + "readiness.percentage";
+
+    private static final int MAX_PERCENTAGE = 100;
+
+    private static final String KEY_CLUSTER_NODES = CONFIGURATION_PREFIX + "cluster.nodes";
+
+    private static final String KEY_CLUSTER_NODE_ID = CONFIGURATION_PREFIX + "cluster.nodeId";
+
+    private static final String KEY_CLUSTER_LEASE_FILE = CONFIGURATION_PREFIX + "cluster.leaseFile";
+
+    private static final String KEY_CLUSTER_LEASE_DURATION = CONFIGURATION_PREFIX + "cluster.leaseDuration";
+
+    private static final long DEFAULT_CLUSTER_LEASE_DURATION = 600L;
+
+    private static final String KEY_ADAPTIVE_PARALLELISM = CONFIGURATION_PREFIX + "parallelism.adaptive";
+
+    private static final String KEY_FAST_RESTART = CONFIGURATION_PREFIX + "fastRestart";
+
+    private static final String KEY_ENUMERATION_PAGE_SIZE = CONFIGURATION_PREFIX + "enumerationPageSize";
+
+    private static final String KEY_INCLUDED_WIKIS = CONFIGURATION_PREFIX + "includedWikis";
+
+    private static final String KEY_EXCLUDED_WIKIS = CONFIGURATION_PREFIX + "excludedWikis";
+
+    private static final String KEY_SELECTED_WIKI_PROPERTIES = CONFIGURATION_PREFIX + "selectedWikiProperties";
+
+    private static final String KEY_EVICTION_IDLE_TIME = CONFIGURATION_PREFIX + "evictionIdleTime";
+
+    private static final String KEY_VIRTUAL_THREADS = CONFIGURATION_PREFIX + "virtualThreads";
+
+    private static final String KEY_DEPENDENCIES = CONFIGURATION_PREFIX + "dependencies";
+
+    private static final String KEY_DEPENDENCIES_PROPERTY = CONFIGURATION_PREFIX + "dependenciesProperty";
+
+    private static final String KEY_SHUTDOWN_GRACE_PERIOD = CONFIGURATION_PREFIX + "shutdownGracePeriod";
+
+    private static final long DEFAULT_SHUTDOWN_GRACE_PERIOD = 30L;
+
+    private static final String INITIAL_REQUEST_URL = INITIAL_REQUEST_PREFIX + URL;
+
+    private static final String LEGACY_INITIAL_REQUEST_URL = INITIAL_REQUEST_PREFIX + XWIKI + DOT + URL;
+
+    private static final String INITIAL_REQUEST_CONTEXT_PATH = INITIAL_REQUEST_PREFIX + CONTEXT_PATH;
+
+    private static final String LEGACY_INITIAL_REQUEST_CONTEXT_PATH =
+        INITIAL_REQUEST_PREFIX + XWIKI + DOT + CONTEXT_PATH;
+
+    private static final String INITIAL_REQUEST_PARAMETERS = INITIAL_REQUEST_PREFIX + PARAMETERS;
+
+    private static final String LEGACY_INITIAL_REQUEST_PARAMETERS = INITIAL_REQUEST_PREFIX + XWIKI + DOT + PARAMETERS;
+
+    private static final String INITIAL_REQUEST_HEADERS = INITIAL_REQUEST_PREFIX + HEADERS;
+
+    private static final String LEGACY_INITIAL_REQUEST_HEADERS = INITIAL_REQUEST_PREFIX + XWIKI + DOT + HEADERS;
+
+    private static final String INITIAL_REQUEST_COOKIES = INITIAL_REQUEST_PREFIX + COOKIES;
+
+    private static final String LEGACY_INITIAL_REQUEST_COOKIES = INITIAL_REQUEST_PREFIX + XWIKI + DOT + COOKIES;
+
+    private static final String INITIAL_REQUEST_REMOTE_ADDR = INITIAL_REQUEST_PREFIX + REMOTE_ADDR;
+
+    private static final String LEGACY_INITIAL_REQUEST_REMOTE_ADDR = INITIAL_REQUEST_PREFIX + XWIKI + DOT + REMOTE_ADDR;
+
+    private static final String VALUE_SUFFIX = ".value";
+
+    private static final String LEGACY_PROPERTY_WARNING = "Configuration key [{}] is deprecated and may be removed in"
+        + " a future release, please use [{}] instead.";
+
+    private final boolean initializeMainWiki;
+
+    private final boolean initializeAllSubWikis;
+
+    private final boolean startDistributionWizardOnInitialization;
+
+    private final URL initialRequestURL;
+
+    private final String initialRequestContextPath;
+
+    private final Map<String, List<String>> initialRequestParameters;
+
+    private final Map<String, List<String>> initialRequestHeaders;
+
+    private final List<Cookie> initialRequestCookies;
+
+    private final String initialRequestRemoteAddr;
+
+    private final Set<WikiDescriptor> initializableWikis;
+
+    private final int parallelism;
+
+    private final Duration initializationTimeout;
+
+    private final int maxRetries;
+
+    private final Duration retryDelay;
+
+    private final boolean accessTrackingEnabled;
+
+    private final List<String> priorityWikis;
+
+    private final WikiInitializationScheduling scheduling;
+
+    private final boolean lazyInitialization;
+
+    private final boolean warmUpEnabled;
+
+    private final List<String> warmUpDocuments;
+
+    private final List<String> warmUpSpaces;
+
+    private final int warmUpConcurrency;
+
+    private final List<String> replayURLs;
+
+    private final String replayAccessLog;
+
+    private final int replayAccessLogSize;
+
+    private final int replayIterations;
+
+    private final int replayParallelism;
+
+    private final List<String> readinessWikis;
+
+    private final int readinessPercentage;
+
+    private final List<String> clusterNodes;
+
+    private final String clusterNodeId;
+
+    private final String clusterLeaseFile;
+
+    private final Duration clusterLeaseDuration;
+
+    private final boolean adaptiveParallelism;
+
+    private final boolean fastRestart;
+
+    private final int enumerationPageSize;
+
+    private final List<String> includedWikis;
+
+    private final List<String> excludedWikis;
+
+    private final List<String> selectedWikiProperties;
+
+    private final Duration evictionIdleTime;
+
+    private final boolean virtualThreads;
+
+    private final Map<String, List<String>> wikiDependencies;
+
+    private final String wikiDependenciesProperty;
+
+    private final Duration shutdownGracePeriod;
+
+    private final InitialRequestTemplate initialRequestTemplate;
+
+    private final WikiSelector wikiSelector;
+
+    /**
+     * Resolve every configuration value from the given source.
+     *
+     * @param configuration the configuration source to read
+     * @param logger the logger used to report deprecated configuration keys
+     */
+    public WikiInitializerConfigurationSnapshot(ConfigurationSource configuration, Logger logger)
+    {
+        this.initializeMainWiki = configuration.getProperty(KEY_INITIALIZE_MAIN_WIKI, false);
+        this.initializeAllSubWikis = configuration.getProperty(KEY_INITIALIZE_SUB_WIKIS, false);
+        this.startDistributionWizardOnInitialization =
+            configuration.getProperty(KEY_START_DISTRIBUTION_WIZARD_ON_INIT, false);
+        this.initialRequestURL = getProperty(configuration, logger, INITIAL_REQUEST_URL, LEGACY_INITIAL_REQUEST_URL,
+            java.net.URL.class);
+        this.initialRequestContextPath = getProperty(configuration, logger, INITIAL_REQUEST_CONTEXT_PATH,
+            LEGACY_INITIAL_REQUEST_CONTEXT_PATH, String.class);
+        this.initialRequestParameters = getValueLists(configuration, logger, INITIAL_REQUEST_PARAMETERS,
+            LEGACY_INITIAL_REQUEST_PARAMETERS);
+        this.initialRequestHeaders = getValueLists(configuration, logger, INITIAL_REQUEST_HEADERS,
+            LEGACY_INITIAL_REQUEST_HEADERS);
+        this.initialRequestCookies = getCookies(configuration, logger);
+        this.initialRequestRemoteAddr = getProperty(configuration, logger, INITIAL_REQUEST_REMOTE_ADDR,
+            LEGACY_INITIAL_REQUEST_REMOTE_ADDR, String.class);
+        this.initializableWikis = getInitializableWikis(configuration);
+        this.parallelism = Math.max(1, configuration.getProperty(KEY_PARALLELISM, 1));
+
+        long timeoutSeconds = configuration.getProperty(KEY_TIMEOUT, 0L);
+        this.initializationTimeout = (timeoutSeconds > 0) ? Duration.ofSeconds(timeoutSeconds) : null;
+        this.maxRetries = Math.max(0, configuration.getProperty(KEY_MAX_RETRIES, 0));
+        long retryDelaySeconds = configuration.getProperty(KEY_RETRY_DELAY, DEFAULT_RETRY_DELAY);
+        this.retryDelay = Duration.ofSeconds(Math.max(0L, retryDelaySeconds));
+
+        this.accessTrackingEnabled = configuration.getProperty(KEY_ACCESS_TRACKING, false);
+
+        this.priorityWikis = Collections.unmodifiableList(
+            new ArrayList<>(configuration.getProperty(KEY_PRIORITY_WIKIS, Collections.<String>emptyList())));
+
+        this.scheduling = WikiInitializationScheduling.parse(configuration.getProperty(KEY_SCHEDULING, String.class),
+            WikiInitializationScheduling.PRIORITY);
+
+        this.lazyInitialization = configuration.getProperty(KEY_LAZY, false);
+
+        this.warmUpEnabled = configuration.getProperty(KEY_WARM_UP, false);
+
+        this.warmUpDocuments = Collections.unmodifiableList(
+            new ArrayList<>(configuration.getProperty(KEY_WARM_UP_DOCUMENTS, Collections.<String>emptyList())));
+
+        this.warmUpSpaces = Collections.unmodifiableList(
+            new ArrayList<>(configuration.getProperty(KEY_WARM_UP_SPACES, Collections.<String>emptyList())));
+
+        this.warmUpConcurrency = Math.max(1, configuration.getProperty(KEY_WARM_UP_CONCURRENCY, 1));
+
+        this.replayURLs = Collections.unmodifiableList(
+            new ArrayList<>(configuration.getProperty(KEY_REPLAY_URLS, Collections.<String>emptyList())));
+
+        this.replayAccessLog = configuration.getProperty(KEY_REPLAY_ACCESS_LOG, String.class);
+
+        this.replayAccessLogSize = Math.max(0, configuration.getProperty(KEY_REPLAY_ACCESS_LOG_SIZE,
+            DEFAULT_REPLAY_ACCESS_LOG_SIZE));
+
+        this.replayIterations = Math.max(1, configuration.getProperty(KEY_REPLAY_ITERATIONS, 1));
+
+        this.replayParallelism = Math.max(1, configuration.getProperty(KEY_REPLAY_PARALLELISM, 1));
+
+        this.readinessWikis = Collections.unmodifiableList(
+            new ArrayList<>(configuration.getProperty(KEY_READINESS_WIKIS, Collections.<String>emptyList())));
+
+        this.readinessPercentage =
+            Math.min(MAX_PERCENTAGE, Math.max(0, configuration.getProperty(KEY_READINESS_PERCENTAGE, 0)));
+
+        this.clusterNodes = Collections.unmodifiableList(
+            new ArrayList<>(configuration.getProperty(KEY_CLUSTER_NODES, Collections.<String>emptyList())));
+
+        this.clusterNodeId = configuration.getProperty(KEY_CLUSTER_NODE_ID, String.class);
+
+        this.clusterLeaseFile = configuration.getProperty(KEY_CLUSTER_LEASE_FILE, String.class);
+
+        this.clusterLeaseDuration = Duration.ofSeconds(
+            Math.max(1L, configuration.getProperty(KEY_CLUSTER_LEASE_DURATION, DEFAULT_CLUSTER_LEASE_DURATION)));
+
+        this.adaptiveParallelism = configuration.getProperty(KEY_ADAPTIVE_PARALLELISM, false);
+
+        this.fastRestart = configuration.getProperty(KEY_FAST_RESTART, false);
+
+        this.enumerationPageSize = Math.max(0, configuration.getProperty(KEY_ENUMERATION_PAGE_SIZE, 0));
+
+        this.includedWikis = Collections.unmodifiableList(
+            new ArrayList<>(configuration.getProperty(KEY_INCLUDED_WIKIS, Collections.<String>emptyList())));
+
+        this.excludedWikis = Collections.unmodifiableList(
+            new ArrayList<>(configuration.getProperty(KEY_EXCLUDED_WIKIS, Collections.<String>emptyList())));
+
+        this.selectedWikiProperties = Collections.unmodifiableList(new ArrayList<>(
+            configuration.getProperty(KEY_SELECTED_WIKI_PROPERTIES, Collections.<String>emptyList())));
+
+        long evictionIdleSeconds = configuration.getProperty(KEY_EVICTION_IDLE_TIME, 0L);
+        this.evictionIdleTime = (evictionIdleSeconds > 0) ? Duration.ofSeconds(evictionIdleSeconds) : null;
+
+        this.virtualThreads = configuration.getProperty(KEY_VIRTUAL_THREADS, false);
+
+        this.wikiDependencies = getWikiDependencies(configuration);
+
+        this.wikiDependenciesProperty = StringUtils.trimToNull(configuration.getProperty(KEY_DEPENDENCIES_PROPERTY,
+            String.class));
+
+        this.shutdownGracePeriod = Duration.ofSeconds(
+            Math.max(0L, configuration.getProperty(KEY_SHUTDOWN_GRACE_PERIOD, DEFAULT_SHUTDOWN_GRACE_PERIOD)));
+
+        this.initialRequestTemplate = new InitialRequestTemplate(this.initialRequestURL,
+            this.initialRequestContextPath, this.initialRequestParameters, this.initialRequestHeaders,
+            this.initialRequestCookies, this.initialRequestRemoteAddr);
+        this.wikiSelector =
+            new WikiSelector(this.includedWikis, this.excludedWikis, this.selectedWikiProperties, logger);
+    }
+
+    /**
+     * @return true if the main wiki should be automatically initialized
+     */
+    public boolean isInitializeMainWiki()
+    {
+        return this.initializeMainWiki;
+    }
+
+    /**
+     * @return true if every sub-wiki should be initialized
+     */
+    public boolean isInitializeAllSubWikis()
+    {
+        return this.initializeAllSubWikis;
+    }
+
+    /**
+     * @return true if the distribution wizard should be started on wiki initialization
+     */
+    public boolean isStartDistributionWizardOnInitialization()
+    {
+        return this.startDistributionWizardOnInitialization;
+    }
+
+    /**
+     * @return the initialization URL to use
+     */
+    public URL getInitialRequestURL()
+    {
+        return this.initialRequestURL;
+    }
+
+    /**
+     * @return the context path to provide in the initialization request
+     */
+    public String getInitialRequestContextPath()
+    {
+        return this.initialRequestContextPath;
+    }
+
+    /**
+     * @return the initialization request parameters
+     */
+    public Map<String, List<String>> getInitialRequestParameters()
+    {
+        return this.initialRequestParameters;
+    }
+
+    /**
+     * @return the initialization request headers
+     */
+    public Map<String, List<String>> getInitialRequestHeaders()
+    {
+        return this.initialRequestHeaders;
+    }
+
+    /**
+     * @return the initialization cookies
+     */
+    public List<Cookie> getInitialRequestCookies()
+    {
+        return this.initialRequestCookies;
+    }
+
+    /**
+     * @return the initialization remote address
+     */
+    public String getInitialRequestRemoteAddr()
+    {
+        return this.initialRequestRemoteAddr;
+    }
+
+    /**
+     * @return the wikis that should be automatically initialized
+     */
+    public Set<WikiDescriptor> getInitializableWikis()
+    {
+        return this.initializableWikis;
+    }
+
+    /**
+     * @return the maximum number of sub-wikis that can be initialized concurrently
+     */
+    public int getParallelism()
+    {
+        return this.parallelism;
+    }
+
+    /**
+     * @return the maximum time allowed to initialize a single sub-wiki, or {@code null} if there is no limit
+     */
+    public Duration getInitializationTimeout()
+    {
+        return this.initializationTimeout;
+    }
+
+    /**
+     * @return the number of times the initialization of a sub-wiki is retried after a failure
+     */
+    public int getMaxRetries()
+    {
+        return this.maxRetries;
+    }
+
+    /**
+     * @return the delay before retrying the initialization of the sub-wikis that failed
+     */
+    public Duration getRetryDelay()
+    {
+        return this.retryDelay;
+    }
+
+    /**
+     * @return true if the requests made to each wiki should be counted
+     */
+    public boolean isAccessTrackingEnabled()
+    {
+        return this.accessTrackingEnabled;
+    }
+
+    /**
+     * @return the identifiers of the sub-wikis to initialize before any other
+     */
+    public List<String> getPriorityWikis()
+    {
+        return this.priorityWikis;
+    }
+
+    /**
+     * @return the strategy used to order the initialization of the sub-wikis
+     */
+    public WikiInitializationScheduling getScheduling()
+    {
+        return this.scheduling;
+    }
+
+    /**
+     * @return true if only the configured sub-wikis should be initialized on startup, the other ones being
+     *         initialized on first access or when the server is idle
+     */
+    public boolean isLazyInitialization()
+    {
+        return this.lazyInitialization;
+    }
+
+    /**
+     * @return true if the caches of each wiki should be warmed up once the wiki is initialized
+     */
+    public boolean isWarmUpEnabled()
+    {
+        return this.warmUpEnabled;
+    }
+
+    /**
+     * @return the references of the documents to load when warming up a wiki
+     */
+    public List<String> getWarmUpDocuments()
+    {
+        return this.warmUpDocuments;
+    }
+
+    /**
+     * @return the references of the spaces whose home page should be loaded when warming up a wiki
+     */
+    public List<String> getWarmUpSpaces()
+    {
+        return this.warmUpSpaces;
+    }
+
+    /**
+     * @return the maximum number of wikis that can be warmed up at the same time
+     */
+    public int getWarmUpConcurrency()
+    {
+        return this.warmUpConcurrency;
+    }
+
+    /**
+     * @return the URLs of the requests to replay once the wikis are initialized
+     */
+    public List<String> getReplayURLs()
+    {
+        return this.replayURLs;
+    }
+
+    /**
+     * @return the path of the access log whose most requested URLs should be replayed, or {@code null} if none
+     */
+    public String getReplayAccessLog()
+    {
+        return this.replayAccessLog;
+    }
+
+    /**
+     * @return the number of most requested URLs to replay from the access log
+     */
+    public int getReplayAccessLogSize()
+    {
+        return this.replayAccessLogSize;
+    }
+
+    /**
+     * @return the number of times each request is replayed
+     */
+    public int getReplayIterations()
+    {
+        return this.replayIterations;
+    }
+
+    /**
+     * @return the maximum number of requests replayed at the same time
+     */
+    public int getReplayParallelism()
+    {
+        return this.replayParallelism;
+    }
+
+    /**
+     * @return the identifiers of the sub-wikis that must be initialized for the node to be ready
+     */
+    public List<String> getReadinessWikis()
+    {
+        return this.readinessWikis;
+    }
+
+    /**
+     * @return the percentage of the sub-wikis that must be initialized for the node to be ready
+     */
+    public int getReadinessPercentage()
+    {
+        return this.readinessPercentage;
+    }
+
+    /**
+     * @return the identifiers of the nodes among which the sub-wikis to initialize are partitioned
+     */
+    public List<String> getClusterNodes()
+    {
+        return this.clusterNodes;
+    }
+
+    /**
+     * @return the identifier of the current node in the cluster, or {@code null} to use the host name
+     */
+    public String getClusterNodeId()
+    {
+        return this.clusterNodeId;
+    }
+
+    /**
+     * @return the path of the file shared by the nodes of the cluster to register themselves, or {@code null}
+     */
+    public String getClusterLeaseFile()
+    {
+        return this.clusterLeaseFile;
+    }
+
+    /**
+     * @return the duration after which a node that did not renew its lease is not part of the cluster anymore
+     */
+    public Duration getClusterLeaseDuration()
+    {
+        return this.clusterLeaseDuration;
+    }
+
+    /**
+     * @return true if the number of sub-wikis initialized at the same time should be adjusted at runtime
+     */
+    public boolean isAdaptiveParallelism()
+    {
+        return this.adaptiveParallelism;
+    }
+
+    /**
+     * @return true if the sub-wikis that did not change since their last initialization should not be initialized
+     *         eagerly on startup
+     */
+    public boolean isFastRestart()
+    {
+        return this.fastRestart;
+    }
+
+    /**
+     * @return the number of sub-wikis to enumerate at once when initializing all the sub-wikis, or 0 for no paging
+     */
+    public int getEnumerationPageSize()
+    {
+        return this.enumerationPageSize;
+    }
+
+    /**
+     * @return the patterns matching the identifiers of the sub-wikis to initialize
+     */
+    public List<String> getIncludedWikis()
+    {
+        return this.includedWikis;
+    }
+
+    /**
+     * @return the patterns matching the identifiers of the sub-wikis that should never be initialized
+     */
+    public List<String> getExcludedWikis()
+    {
+        return this.excludedWikis;
+    }
+
+    /**
+     * @return the criteria that the descriptor of a sub-wiki must all match for the sub-wiki to be initialized
+     */
+    public List<String> getSelectedWikiProperties()
+    {
+        return this.selectedWikiProperties;
+    }
+
+    /**
+     * @return the time after which an initialized sub-wiki that was not accessed is evicted, or {@code null} to never
+     *         evict sub-wikis
+     */
+    public Duration getEvictionIdleTime()
+    {
+        return this.evictionIdleTime;
+    }
+
+    /**
+     * @return true if each sub-wiki should be initialized on its own virtual thread when the JVM supports them
+     */
+    public boolean isVirtualThreads()
+    {
+        return this.virtualThreads;
+    }
+
+    /**
+     * @return the identifiers of the sub-wikis that each sub-wiki depends on, indexed by sub-wiki identifier
+     */
+    public Map<String, List<String>> getWikiDependencies()
+    {
+        return this.wikiDependencies;
+    }
+
+    /**
+     * @return the descriptor property listing the identifiers of the sub-wikis that a sub-wiki depends on, or
+     *         {@code null} to ignore the descriptors
+     */
+    public String getWikiDependenciesProperty()
+    {
+        return this.wikiDependenciesProperty;
+    }
+
+    /**
+     * @return the time left to the sub-wikis being initialized to finish when the application stops
+     */
+    public Duration getShutdownGracePeriod()
+    {
+        return this.shutdownGracePeriod;
+    }
+
+    /**
+     * @return the template of the request used to initialize the main wiki
+     */
+    public InitialRequestTemplate getInitialRequestTemplate()
+    {
+        return this.initialRequestTemplate;
+    }
+
+    /**
+     * @return the compiled selection of the sub-wikis to initialize
+     */
+    public WikiSelector getWikiSelector()
+    {
+        return this.wikiSelector;
+    }
+
+    private static Map<String, List<String>> getValueLists(ConfigurationSource configuration, Logger logger,
+        String key, String legacyKey)
+    {
+        String prefix = getEffectiveKey(configuration, logger, key, legacyKey);
+        List<String> names = configuration.getProperty(prefix, new ArrayList<>(0));
+
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        for (String name : names) {
+            values.computeIfAbsent(name, k -> new ArrayList<>())
+                .addAll(configuration.getProperty(prefix + DOT + name + VALUE_SUFFIX, new ArrayList<>(0)));
+        }
+
+        values.replaceAll((name, list) -> Collections.unmodifiableList(list));
+
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static Map<String, List<String>> getWikiDependencies(ConfigurationSource configuration)
+    {
+        List<String> wikiIds = configuration.getProperty(KEY_DEPENDENCIES, new ArrayList<>(0));
+
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        for (String wikiId : wikiIds) {
+            List<String> wikiDependencies =
+                configuration.getProperty(KEY_DEPENDENCIES + DOT + wikiId + VALUE_SUFFIX, new ArrayList<>(0));
+            if (!wikiDependencies.isEmpty()) {
+                dependencies.put(wikiId, Collections.unmodifiableList(new ArrayList<>(wikiDependencies)));
+            }
+        }
+
+        return Collections.unmodifiableMap(dependencies);
+    }
+
+    private static List<Cookie> getCookies(ConfigurationSource configuration, Logger logger)
+    {
+        String key = getEffectiveKey(configuration, logger, INITIAL_REQUEST_COOKIES, LEGACY_INITIAL_REQUEST_COOKIES);
+        List<String> cookieNames = configuration.getProperty(key, new ArrayList<>(0));
+
+        List<Cookie> cookies = new ArrayList<>(cookieNames.size());
+        for (String cookieName : cookieNames) {
+            cookies.add(new Cookie(cookieName, configuration.getProperty(key + DOT + cookieName + VALUE_SUFFIX)));
+        }
+
+        return Collections.unmodifiableList(cookies);
+    }
+
+    private static Set<WikiDescriptor> getInitializableWikis(ConfigurationSource configuration)
+    {
+        List<String> wikiIDs = configuration.getProperty(KEY_INITIALIZABLE_SUB_WIKIS, Collections.emptyList());
+
+        Set<WikiDescriptor> wikis = new LinkedHashSet<>();
+        for (String wikiID : wikiIDs) {
+            wikis.add(new WikiDescriptor(wikiID, wikiID));
+        }
+
+        return Collections.unmodifiableSet(wikis);
+    }
+
+    private static String getEffectiveKey(ConfigurationSource configuration, Logger logger, String key,
+        String legacyKey)
+    {
+        if (!configuration.containsKey(key) && configuration.containsKey(legacyKey)) {
+            logger.warn(LEGACY_PROPERTY_WARNING, legacyKey, key);
+            return legacyKey;
+        }
+
+        return key;
+    }
+
+    private static <T> T getProperty(ConfigurationSource configuration, Logger logger, String key, String legacyKey,
+        Class<T> valueClass)
+    {
+        T value = configuration.getProperty(key, valueClass);
+
+        if (value == null) {
+            value = configuration.getProperty(legacyKey, valueClass);
+
+            if (value != null) {
+                logger.warn(LEGACY_PROPERTY_WARNING, legacyKey, key);
+            }
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.environment.Environment;
+
+/**
+ * Store the data collected by the Wiki Initializer across restarts, as properties files located in the
+ * {@code wikiinitializer} folder of the permanent directory.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiInitializerStore.class)
+@Singleton
+public class WikiInitializerStore
+{
+    private static final String STORE_DIRECTORY = "wikiinitializer";
+
+    private static final String EXTENSION = ".properties";
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Load the properties stored under the given name.
+     *
+     * @param name the name of the properties
+     * @return the stored properties, empty if none could be loaded
+     */
+    public Properties load(String name)
+    {
+        Properties properties = new Properties();
+
+        File file = getFile(name);
+        if (file.isFile()) {
+            try (InputStream stream = Files.newInputStream(file.toPath())) {
+                properties.load(stream);
+            } catch (IOException e) {
+                this.logger.warn("Failed to load the wiki initializer data from [{}]: {}", file, e.getMessage());
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Store the given properties under the given name, replacing the previously stored ones.
+     *
+     * @param name the name of the properties
+     * @param properties the properties to store
+     * @param comment a description of the properties
+     */
+    public synchronized void save(String name, Properties properties, String comment)
+    {
+        File file = getFile(name);
+        File temporaryFile = new File(file.getParentFile(), file.getName() + ".tmp");
+
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+
+            try (OutputStream stream = Files.newOutputStream(temporaryFile.toPath())) {
+                properties.store(stream, comment);
+            }
+
+            // Never leave a partially written file behind, even when the server is stopped while saving.
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            this.logger.warn("Failed to save the wiki initializer data to [{}]: {}", file, e.getMessage());
+        }
+    }
+
+    private File getFile(String name)
+    {
+        return new File(new File(this.environment.getPermanentDirectory(), STORE_DIRECTORY), name + EXTENSION);
+    }
+}
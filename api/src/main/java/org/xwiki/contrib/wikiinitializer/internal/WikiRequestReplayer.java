@@ -0,0 +1,232 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.environment.Environment;
+import org.xwiki.environment.internal.ServletEnvironment;
+
+import com.xpn.xwiki.internal.web.LegacyAction;
+import com.xpn.xwiki.web.XWikiServletResponseStub;
+
+/**
+ * Replay a set of representative requests against request and response stubs, discarding their output, so that the
+ * templates, the rendering caches and the hot code paths are warm before the first real requests.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component(roles = WikiRequestReplayer.class)
+@Singleton
+public class WikiRequestReplayer
+{
+    private static final String THREAD_NAME_PATTERN = "Wiki Request Replayer #%d";
+
+    private static final String DEFAULT_BASE_URL = "http://localhost:8080/";
+
+    private static final String DEFAULT_ACTION = "view";
+
+    private static final String ACTION_SERVLET = "bin";
+
+    private static final String WIKI_SERVLET = "wiki";
+
+    private static final String PATH_SEPARATOR = "/";
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private Provider<WikiInitializerConfiguration> configurationProvider;
+
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private WikiAccessTracker accessTracker;
+
+    /**
+     * @param configuration the configuration of the Wiki Initializer
+     * @return true if there are requests to replay
+     */
+    public boolean isEnabled(WikiInitializerConfiguration configuration)
+    {
+        return !configuration.getReplayURLs().isEmpty()
+            || (configuration.getReplayAccessLog() != null && configuration.getReplayAccessLogSize() > 0);
+    }
+
+    /**
+     * Replay the configured requests, as many times as configured, on a dedicated pool of threads.
+     *
+     * @param canceled tells if the remaining requests should be skipped
+     * @return the number of requests replayed successfully
+     * @throws InterruptedException if the thread is interrupted while waiting for the requests to be replayed
+     */
+    public int replay(BooleanSupplier canceled) throws InterruptedException
+    {
+        WikiInitializerConfiguration configuration = this.configurationProvider.get();
+        InitialRequestTemplate template = InitialRequestTemplate.fromConfiguration(configuration);
+        List<URL> urls = getURLs(configuration, template);
+        if (urls.isEmpty()) {
+            return 0;
+        }
+
+        String defaultContextPath = ((ServletEnvironment) this.environment).getServletContext().getContextPath();
+        String contextPath = (template.getContextPath() != null) ? template.getContextPath() : defaultContextPath;
+
+        this.logger.info("Replaying [{}] requests [{}] times with a parallelism of [{}] ...", urls.size(),
+            configuration.getReplayIterations(), configuration.getReplayParallelism());
+
+        AtomicInteger replayed = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(urls.size() * configuration.getReplayIterations());
+        for (int i = 0; i < configuration.getReplayIterations(); i++) {
+            for (URL url : urls) {
+                tasks.add(() -> {
+                    // The replayed requests must not count as accesses to the wikis.
+                    if (!canceled.getAsBoolean()
+                        && this.accessTracker.runUntracked(() -> replay(url, template, contextPath))) {
+                        replayed.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        // The threads are discarded after the replay, together with any state the actions left behind them.
+        ExecutorService executorService = Executors.newFixedThreadPool(configuration.getReplayParallelism(),
+            new BasicThreadFactory.Builder().namingPattern(THREAD_NAME_PATTERN).daemon(true).build());
+        try {
+            executorService.invokeAll(tasks);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        this.logger.info("Replayed [{}] requests out of [{}]", replayed.get(), tasks.size());
+
+        return replayed.get();
+    }
+
+    private List<URL> getURLs(WikiInitializerConfiguration configuration, InitialRequestTemplate template)
+    {
+        Set<String> specifications = new LinkedHashSet<>(configuration.getReplayURLs());
+        if (configuration.getReplayAccessLog() != null && configuration.getReplayAccessLogSize() > 0) {
+            try {
+                specifications.addAll(AccessLogReader.getMostRequestedURLs(
+                    Paths.get(configuration.getReplayAccessLog()), configuration.getReplayAccessLogSize()));
+            } catch (IOException e) {
+                this.logger.warn("Failed to read the access log [{}]: {}", configuration.getReplayAccessLog(),
+                    e.getMessage());
+            }
+        }
+
+        List<URL> urls = new ArrayList<>(specifications.size());
+        for (String specification : specifications) {
+            try {
+                URL baseURL = (template.getRequestURL() != null) ? template.getRequestURL() : new URL(DEFAULT_BASE_URL);
+                urls.add(new URL(baseURL, specification));
+            } catch (MalformedURLException e) {
+                this.logger.warn("Ignoring invalid replay URL [{}]: {}", specification, e.getMessage());
+            }
+        }
+
+        return urls;
+    }
+
+    private boolean replay(URL url, InitialRequestTemplate template, String contextPath)
+    {
+        try {
+            ComponentManager componentManager = this.componentManagerProvider.get();
+            LegacyAction action = componentManager.getInstance(LegacyAction.class, getAction(url, contextPath));
+            action.execute(template.createRequest(url, getParameters(url), contextPath),
+                new XWikiServletResponseStub());
+
+            return true;
+        } catch (Exception e) {
+            this.logger.warn("Failed to replay request [{}]: {}", url, e.getMessage());
+
+            return false;
+        }
+    }
+
+    private String getAction(URL url, String contextPath)
+    {
+        String[] segments = StringUtils.split(StringUtils.removeStart(url.getPath(), contextPath), PATH_SEPARATOR);
+
+        // /bin/<action>/... or /wiki/<wiki>/<action>/..., the view action being optional.
+        int actionIndex = -1;
+        if (segments.length > 0 && ACTION_SERVLET.equals(segments[0])) {
+            actionIndex = 1;
+        } else if (segments.length > 0 && WIKI_SERVLET.equals(segments[0])) {
+            actionIndex = 2;
+        }
+
+        if (actionIndex > 0 && actionIndex < segments.length
+            && this.componentManagerProvider.get().hasComponent(LegacyAction.class, segments[actionIndex])) {
+            return segments[actionIndex];
+        }
+
+        return DEFAULT_ACTION;
+    }
+
+    private static Map<String, String[]> getParameters(URL url)
+    {
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+
+        for (String parameter : StringUtils.split(StringUtils.defaultString(url.getQuery()), '&')) {
+            String name = URLDecoder.decode(StringUtils.substringBefore(parameter, "="), StandardCharsets.UTF_8);
+            String value = URLDecoder.decode(StringUtils.substringAfter(parameter, "="), StandardCharsets.UTF_8);
+            parameters.merge(name, new String[] { value }, ArrayUtils::addAll);
+        }
+
+        return parameters;
+    }
+}
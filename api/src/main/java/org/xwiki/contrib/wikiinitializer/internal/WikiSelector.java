@@ -0,0 +1,219 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+import org.xwiki.wiki.properties.WikiPropertyGroup;
+
+/**
+ * Immutable, pre-compiled selection of the sub-wikis to initialize, from the patterns and the descriptor property
+ * criteria of the configuration.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+public final class WikiSelector
+{
+    private static final String REGEX_PREFIX = "regex:";
+
+    private static final String PROPERTY_SEPARATOR = "=";
+
+    private static final String GROUP_SEPARATOR = ".";
+
+    private static final Map<String, Function<WikiDescriptor, Object>> PROPERTIES = Map.of(
+        "id", WikiDescriptor::getId,
+        "prettyName", WikiDescriptor::getPrettyName,
+        "owner", WikiDescriptor::getOwnerId,
+        "description", WikiDescriptor::getDescription);
+
+    private final List<Pattern> includedWikis;
+
+    private final List<Pattern> excludedWikis;
+
+    private final Map<String, Pattern> selectedProperties;
+
+    /**
+     * @param includedWikis the patterns matching the identifiers of the sub-wikis to select
+     * @param excludedWikis the patterns matching the identifiers of the sub-wikis to never select
+     * @param selectedProperties the {@code property=pattern} criteria that the selected descriptors must all match
+     * @param logger the logger used to report invalid patterns, which are ignored
+     */
+    public WikiSelector(List<String> includedWikis, List<String> excludedWikis, List<String> selectedProperties,
+        Logger logger)
+    {
+        this.includedWikis = compile(includedWikis, logger);
+        this.excludedWikis = compile(excludedWikis, logger);
+
+        Map<String, Pattern> properties = new LinkedHashMap<>();
+        for (String criterion : selectedProperties) {
+            String property = StringUtils.substringBefore(criterion, PROPERTY_SEPARATOR).trim();
+            Pattern pattern = compile(StringUtils.substringAfter(criterion, PROPERTY_SEPARATOR).trim(), logger);
+            if (pattern != null && (PROPERTIES.containsKey(property) || property.contains(GROUP_SEPARATOR))) {
+                properties.put(property, pattern);
+            } else {
+                logger.warn("Ignoring invalid wiki selection criterion [{}]", criterion);
+            }
+        }
+        this.selectedProperties = Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * @param configuration the configuration of the Wiki Initializer
+     * @return the selector described by the given configuration
+     */
+    public static WikiSelector fromConfiguration(WikiInitializerConfiguration configuration)
+    {
+        // The invalid criteria have already been reported when reading the configuration.
+        return new WikiSelector(configuration.getIncludedWikis(), configuration.getExcludedWikis(),
+            configuration.getSelectedWikiProperties(), NOPLogger.NOP_LOGGER);
+    }
+
+    /**
+     * @return true if sub-wikis are selected by patterns or by descriptor properties
+     */
+    public boolean isSelecting()
+    {
+        return !this.includedWikis.isEmpty() || !this.selectedProperties.isEmpty();
+    }
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return true if the wiki should never be initialized
+     */
+    public boolean isExcluded(String wikiId)
+    {
+        return matchesAny(this.excludedWikis, wikiId);
+    }
+
+    /**
+     * @param descriptor the descriptor of a wiki
+     * @return true if the wiki is selected, i.e. if it matches the included patterns (if any) and every descriptor
+     *         property criterion, and is not excluded
+     */
+    public boolean matches(WikiDescriptor descriptor)
+    {
+        if (!isSelecting() || isExcluded(descriptor.getId())) {
+            return false;
+        }
+
+        if (!this.includedWikis.isEmpty() && !matchesAny(this.includedWikis, descriptor.getId())) {
+            return false;
+        }
+
+        for (Map.Entry<String, Pattern> criterion : this.selectedProperties.entrySet()) {
+            Object value = getProperty(descriptor, criterion.getKey());
+            if (value == null || !criterion.getValue().matcher(Objects.toString(value)).matches()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param descriptor the descriptor of a wiki
+     * @param property one of {@code id}, {@code prettyName}, {@code owner}, {@code description} or
+     *            {@code <propertyGroup>.<property>}
+     * @return the value of the property in the descriptor, or {@code null} if it's not set
+     */
+    public static Object getProperty(WikiDescriptor descriptor, String property)
+    {
+        Function<WikiDescriptor, Object> getter = PROPERTIES.get(property);
+        if (getter != null) {
+            return getter.apply(descriptor);
+        }
+
+        WikiPropertyGroup group =
+            descriptor.getPropertyGroup(StringUtils.substringBefore(property, GROUP_SEPARATOR));
+
+        return (group != null) ? group.get(StringUtils.substringAfter(property, GROUP_SEPARATOR)) : null;
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String value)
+    {
+        return patterns.stream().anyMatch(pattern -> pattern.matcher(value).matches());
+    }
+
+    private static List<Pattern> compile(List<String> patterns, Logger logger)
+    {
+        List<Pattern> compiledPatterns = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            Pattern compiledPattern = compile(pattern.trim(), logger);
+            if (compiledPattern != null) {
+                compiledPatterns.add(compiledPattern);
+            }
+        }
+
+        return Collections.unmodifiableList(compiledPatterns);
+    }
+
+    private static Pattern compile(String pattern, Logger logger)
+    {
+        try {
+            if (pattern.startsWith(REGEX_PREFIX)) {
+                return Pattern.compile(pattern.substring(REGEX_PREFIX.length()));
+            }
+
+            return Pattern.compile(toRegex(pattern));
+        } catch (PatternSyntaxException e) {
+            logger.warn("Ignoring invalid wiki pattern [{}]: {}", pattern, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Convert a glob, where {@code *} matches any sequence of characters and {@code ?} any single character.
+     */
+    private static String toRegex(String glob)
+    {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append((c == '*') ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+
+        return regex.toString();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal.rest;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationState;
+import org.xwiki.contrib.wikiinitializer.internal.WikiInitializationReadiness;
+import org.xwiki.rest.XWikiRestComponent;
+
+/**
+ * REST resource answering {@code 200} when the node is ready to serve its traffic and {@code 503} otherwise, so that
+ * a load balancer only sends requests to nodes whose wikis are initialized. The body lists the state of the main wiki
+ * and of the readiness sub-wikis.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component
+@Named("org.xwiki.contrib.wikiinitializer.internal.rest.ReadinessResource")
+@Singleton
+@Path("/wikiinitializer/readiness")
+public class ReadinessResource implements XWikiRestComponent
+{
+    private static final String READY = "ready";
+
+    private static final String NOT_READY = "not ready";
+
+    @Inject
+    private WikiInitializationReadiness readiness;
+
+    /**
+     * @return the readiness of the node
+     */
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getReadiness()
+    {
+        boolean ready = this.readiness.isReady();
+
+        // Only the wikis checked by the readiness are listed, since the check is made frequently.
+        StringBuilder body = new StringBuilder(ready ? READY : NOT_READY).append('\n');
+        for (Map.Entry<String, WikiInitializationState> state : this.readiness.getReadinessStates().entrySet()) {
+            body.append(state.getKey()).append('=').append(state.getValue()).append('\n');
+        }
+
+        return Response.status(ready ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+            .entity(body.toString()).build();
+    }
+}
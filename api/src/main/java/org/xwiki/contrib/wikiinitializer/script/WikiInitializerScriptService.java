@@ -0,0 +1,140 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.script;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationState;
+import org.xwiki.contrib.wikiinitializer.internal.DistributionWizardStarter;
+import org.xwiki.contrib.wikiinitializer.internal.WikiInitializationReadiness;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.script.service.ScriptService;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.stability.Unstable;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+/**
+ * Script service exposing the progress of the initialization of the wikis, e.g. to build a readiness check. The
+ * details about the whole farm require programming rights.
+ *
+ * @version $Id$
+ * @since 1.2.4
+ */
+@Component
+@Named("wikiinitializer")
+@Singleton
+@Unstable
+public class WikiInitializerScriptService implements ScriptService
+{
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private WikiInitializationManager wikiInitializationManager;
+
+    @Inject
+    private WikiInitializationReadiness readiness;
+
+    @Inject
+    private DistributionWizardStarter distributionWizardStarter;
+
+    @Inject
+    private ContextualAuthorizationManager authorization;
+
+    /**
+     * @return true if the main wiki and the configured readiness sub-wikis are initialized
+     */
+    public boolean isReady()
+    {
+        return this.readiness.isReady();
+    }
+
+    /**
+     * @param wikiId the identifier of a wiki
+     * @return the state of the initialization of the wiki
+     */
+    public WikiInitializationState getState(String wikiId)
+    {
+        return this.wikiInitializationManager.getState(wikiId);
+    }
+
+    /**
+     * @return the initialization state of every wiki, indexed by wiki identifier, or {@code null} if the wikis
+     *         cannot be listed or the current user doesn't have programming rights
+     */
+    public Map<String, WikiInitializationState> getStates()
+    {
+        if (!this.authorization.hasAccess(Right.PROGRAMMING)) {
+            return null;
+        }
+
+        try {
+            return this.readiness.getStates();
+        } catch (WikiManagerException e) {
+            this.logger.warn("Failed to get the initialization state of the wikis: {}", e.getMessage());
+
+            return null;
+        }
+    }
+
+    /**
+     * @return the status of the job initializing the sub-wikis on startup, or {@code null} if no such job has been
+     *         started or the current user doesn't have programming rights
+     */
+    public JobStatus getSubWikisInitializationStatus()
+    {
+        // The job status gives access to the job itself, e.g. to cancel it.
+        if (!this.authorization.hasAccess(Right.PROGRAMMING)) {
+            return null;
+        }
+
+        return this.wikiInitializationManager.getSubWikisInitializationStatus();
+    }
+
+    /**
+     * @return the state of the start of the distribution wizard, done in the background once the main wiki is
+     *         initialized
+     */
+    public DistributionWizardStarter.State getDistributionWizardState()
+    {
+        return this.distributionWizardStarter.getState();
+    }
+
+    /**
+     * @return the error that made the start of the distribution wizard fail, or {@code null} if there is none or the
+     *         current user doesn't have programming rights
+     */
+    public Throwable getDistributionWizardError()
+    {
+        if (!this.authorization.hasAccess(Right.PROGRAMMING)) {
+            return null;
+        }
+
+        return this.distributionWizardStarter.getError();
+    }
+}
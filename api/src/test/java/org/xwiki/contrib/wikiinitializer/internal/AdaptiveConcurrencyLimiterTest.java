@@ -0,0 +1,154 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link AdaptiveConcurrencyLimiter}.
+ *
+ * @version $Id$
+ */
+class AdaptiveConcurrencyLimiterTest
+{
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(300);
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    @Test
+    void increaseUpToTheMaximumDuringSlowStart() throws InterruptedException
+    {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(4);
+
+        for (int expectedLimit : new int[] { 2, 3, 4, 4 }) {
+            limiter.acquire();
+            limiter.release(-1, FAST, true);
+            assertEquals(expectedLimit, limiter.getLimit());
+        }
+    }
+
+    @Test
+    void decreaseOnFailureThenIncreaseAdditively() throws InterruptedException
+    {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(8);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+            limiter.release(-1, FAST, true);
+        }
+        assertEquals(4, limiter.getLimit());
+
+        limiter.acquire();
+        limiter.release(-1, FAST, false);
+        assertEquals(2, limiter.getLimit());
+
+        // Out of the slow start, the limit grows by one every round of initializations: 2.5, 2.9, 3.24.
+        for (int expectedLimit : new int[] { 2, 2, 3 }) {
+            limiter.acquire();
+            limiter.release(-1, FAST, true);
+            assertEquals(expectedLimit, limiter.getLimit());
+        }
+    }
+
+    @Test
+    void decreaseWhenSlowerThanExpected() throws InterruptedException
+    {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(8);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+            limiter.release(100, FAST, true);
+        }
+        assertEquals(4, limiter.getLimit());
+
+        limiter.acquire();
+        limiter.release(100, SLOW, true);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void decreaseWhenSlowerThanTheAverageWhenNoDurationIsExpected() throws InterruptedException
+    {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(8);
+        limiter.acquire();
+        limiter.release(-1, TimeUnit.MILLISECONDS.toNanos(100), true);
+        assertEquals(2, limiter.getLimit());
+
+        limiter.acquire();
+        limiter.release(-1, SLOW, true);
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    void getExpectedDuration()
+    {
+        AdaptiveConcurrencyLimiter limiter =
+            new AdaptiveConcurrencyLimiter(4, this.activeRequests::get, wikiId -> "known".equals(wikiId) ? 42 : -1);
+
+        assertEquals(42, limiter.getExpectedDuration("known"));
+        assertEquals(-1, limiter.getExpectedDuration("unknown"));
+    }
+
+    @Test
+    void giveThePriorityToTheRequestsBeingServed() throws Exception
+    {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(4);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+            limiter.release(-1, FAST, true);
+        }
+        assertEquals(4, limiter.getLimit());
+
+        // Only one initialization is allowed while 3 requests are being served, but at least one always is.
+        this.activeRequests.set(3);
+        limiter.acquire();
+
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        thread.join(300);
+        assertFalse(acquired.get());
+
+        // The waiting initialization starts once the requests are served.
+        this.activeRequests.set(0);
+        thread.join(1000);
+        assertTrue(acquired.get());
+    }
+
+    private AdaptiveConcurrencyLimiter createLimiter(int maxLimit)
+    {
+        return new AdaptiveConcurrencyLimiter(maxLimit, this.activeRequests::get, wikiId -> -1);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link ConsistentHashRing}.
+ *
+ * @version $Id$
+ */
+class ConsistentHashRingTest
+{
+    private static final int KEYS = 10000;
+
+    @Test
+    void getNodeOnEmptyRing()
+    {
+        assertNull(new ConsistentHashRing(Collections.emptyList()).getNode("wiki"));
+    }
+
+    @Test
+    void getNodeDoesNotDependOnTheOrderOfTheNodes()
+    {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node1", "node2", "node3"));
+        ConsistentHashRing otherRing = new ConsistentHashRing(Arrays.asList("node3", "node1", "node2"));
+
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(ring.getNode("wiki" + i), otherRing.getNode("wiki" + i));
+        }
+    }
+
+    @Test
+    void spreadTheKeysEvenly()
+    {
+        List<String> nodes = Arrays.asList("node1", "node2", "node3", "node4");
+        ConsistentHashRing ring = new ConsistentHashRing(nodes);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.getNode("wiki" + i), 1, Integer::sum);
+        }
+
+        for (String node : nodes) {
+            int count = counts.getOrDefault(node, 0);
+            assertTrue(count > KEYS / nodes.size() / 2 && count < KEYS / nodes.size() * 2,
+                String.format("Node [%s] owns [%s] keys out of [%s]", node, count, KEYS));
+        }
+    }
+
+    @Test
+    void onlyMoveTheKeysOfTheAddedNode()
+    {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("node1", "node2", "node3"));
+        ConsistentHashRing largerRing = new ConsistentHashRing(Arrays.asList("node1", "node2", "node3", "node4"));
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String node = largerRing.getNode("wiki" + i);
+            if (!node.equals(ring.getNode("wiki" + i))) {
+                assertEquals("node4", node);
+                moved++;
+            }
+        }
+        assertTrue(moved > 0 && moved < KEYS / 2, String.format("[%s] keys moved out of [%s]", moved, KEYS));
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationException;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationState;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.test.annotation.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultWikiInitializationManager}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DefaultWikiInitializationManagerTest
+{
+    private static final String WIKI = "wiki";
+
+    private static final WikiDescriptor DESCRIPTOR = new WikiDescriptor(WIKI, WIKI);
+
+    @InjectMockComponents
+    private DefaultWikiInitializationManager manager;
+
+    @MockComponent
+    private WikiInitializerConfiguration configuration;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    private XWikiContext context;
+
+    private XWiki xwiki;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp()
+    {
+        this.context = mock(XWikiContext.class);
+        this.xwiki = mock(XWiki.class);
+        when(this.context.getWiki()).thenReturn(this.xwiki);
+        when(this.contextProvider.get()).thenReturn(this.context);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.release.countDown();
+        this.callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentInitializationsOfTheSameWikiRunOnce() throws Exception
+    {
+        blockInitialization(null);
+
+        CompletableFuture<Void> first = initializeAsync();
+        assertTrue(this.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = initializeAsync();
+
+        assertEquals(WikiInitializationState.INITIALIZING, this.manager.getState(WIKI));
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+
+        this.release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        // Once initialized, the wiki is not initialized again.
+        this.manager.initialize(DESCRIPTOR);
+
+        verify(this.xwiki, times(1)).initializeWiki(WIKI, true, this.context);
+        assertTrue(this.manager.isInitialized(WIKI));
+    }
+
+    @Test
+    void failureCompletesTheWaiters() throws Exception
+    {
+        blockInitialization(new IllegalStateException("broken"));
+
+        CompletableFuture<Void> first = initializeAsync();
+        assertTrue(this.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = initializeAsync();
+        Thread.sleep(100);
+
+        this.release.countDown();
+        assertWikiInitializationFailure(first);
+        assertWikiInitializationFailure(second);
+        assertEquals(WikiInitializationState.FAILED, this.manager.getState(WIKI));
+
+        // A failed initialization can be attempted again.
+        assertThrows(WikiInitializationException.class, () -> this.manager.initialize(DESCRIPTOR));
+        verify(this.xwiki, times(2)).initializeWiki(WIKI, true, this.context);
+    }
+
+    @Test
+    void errorCompletesTheWaiters() throws Exception
+    {
+        NoClassDefFoundError error = new NoClassDefFoundError("broken");
+        blockInitialization(error);
+
+        CompletableFuture<Void> first = initializeAsync();
+        assertTrue(this.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = initializeAsync();
+        Thread.sleep(100);
+
+        this.release.countDown();
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertEquals(error, exception.getCause());
+        assertWikiInitializationFailure(second);
+        assertEquals(WikiInitializationState.FAILED, this.manager.getState(WIKI));
+    }
+
+    @Test
+    void abandonCompletesTheWaitersAndAllowsANewInitialization() throws Exception
+    {
+        blockInitialization(null);
+
+        CompletableFuture<Void> first = initializeAsync();
+        assertTrue(this.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = initializeAsync();
+        Thread.sleep(100);
+
+        assertTrue(this.manager.abandon(WIKI));
+        assertWikiInitializationFailure(second);
+        assertEquals(WikiInitializationState.FAILED, this.manager.getState(WIKI));
+
+        // The abandoned initialization ending later doesn't affect the state of the wiki.
+        this.release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(WikiInitializationState.FAILED, this.manager.getState(WIKI));
+        assertFalse(this.manager.abandon(WIKI));
+
+        this.manager.initialize(DESCRIPTOR);
+        verify(this.xwiki, times(2)).initializeWiki(WIKI, true, this.context);
+        assertTrue(this.manager.isInitialized(WIKI));
+    }
+
+    /**
+     * Block the first initialization of the wiki until {@link #release} is counted down, then fail with the given
+     * error, if any.
+     */
+    private void blockInitialization(Throwable error) throws Exception
+    {
+        doAnswer(invocation -> {
+            if (this.started.getCount() > 0) {
+                this.started.countDown();
+                this.release.await();
+            }
+            if (error != null) {
+                throw error;
+            }
+            return null;
+        }).when(this.xwiki).initializeWiki(WIKI, true, this.context);
+    }
+
+    private CompletableFuture<Void> initializeAsync()
+    {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                this.manager.initialize(DESCRIPTOR);
+            } catch (WikiInitializationException e) {
+                throw new CompletionException(e);
+            }
+        }, this.callers);
+    }
+
+    private void assertWikiInitializationFailure(CompletableFuture<Void> initialization)
+    {
+        ExecutionException exception =
+            assertThrows(ExecutionException.class, () -> initialization.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(WikiInitializationException.class, exception.getCause());
+    }
+}
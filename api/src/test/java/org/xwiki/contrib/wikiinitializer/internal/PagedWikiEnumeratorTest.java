@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.annotation.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link PagedWikiEnumerator}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class PagedWikiEnumeratorTest
+{
+    private static final String LAST_NAME = "lastName";
+
+    @InjectMockComponents
+    private PagedWikiEnumerator enumerator;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    private final Query query = mock(Query.class);
+
+    @BeforeEach
+    void configure() throws Exception
+    {
+        when(this.queryManager.createQuery(anyString(), any())).thenReturn(this.query);
+        when(this.query.setWiki(any())).thenReturn(this.query);
+        when(this.query.bindValue(anyString(), any())).thenReturn(this.query);
+        when(this.query.setLimit(anyInt())).thenReturn(this.query);
+    }
+
+    @Test
+    void getPages() throws Exception
+    {
+        when(this.query.<String>execute()).thenReturn(Arrays.asList("XWikiServerAlpha", "XWikiServerBeta"),
+            Collections.singletonList("XWikiServerGamma"));
+
+        Iterator<List<String>> pages = this.enumerator.getPages(2);
+
+        assertTrue(pages.hasNext());
+        assertEquals(Arrays.asList("alpha", "beta"), pages.next());
+        assertEquals(Collections.singletonList("gamma"), pages.next());
+        assertFalse(pages.hasNext());
+        assertThrows(NoSuchElementException.class, pages::next);
+
+        // Each page starts after the last descriptor of the previous one.
+        verify(this.query).bindValue(LAST_NAME, "");
+        verify(this.query).bindValue(LAST_NAME, "XWikiServerBeta");
+        verify(this.query, times(2)).setLimit(2);
+    }
+
+    @Test
+    void getPagesWhenTheLastPageIsFull() throws Exception
+    {
+        when(this.query.<String>execute()).thenReturn(Arrays.asList("XWikiServerAlpha", "XWikiServerBeta"),
+            Collections.emptyList());
+
+        Iterator<List<String>> pages = this.enumerator.getPages(2);
+
+        assertEquals(Arrays.asList("alpha", "beta"), pages.next());
+        assertFalse(pages.hasNext());
+    }
+
+    @Test
+    void getPagesWhenTheQueryFails() throws Exception
+    {
+        when(this.query.execute()).thenThrow(new QueryException("error", this.query, null));
+
+        Iterator<List<String>> pages = this.enumerator.getPages(2);
+
+        assertThrows(IllegalStateException.class, pages::hasNext);
+    }
+
+    @Test
+    void count() throws Exception
+    {
+        when(this.query.<Long>execute()).thenReturn(Collections.singletonList(42L));
+
+        assertEquals(42L, this.enumerator.count());
+        verify(this.queryManager).createQuery("select count(distinct doc.name) from Document doc,"
+            + " doc.object(XWiki.XWikiServerClass) as descriptor where doc.space = 'XWiki'"
+            + " and doc.name like 'XWikiServer%' and doc.fullName <> 'XWiki.XWikiServerClassTemplate'", Query.XWQL);
+    }
+
+    @Test
+    void toWikiId()
+    {
+        assertEquals("mywiki", PagedWikiEnumerator.toWikiId("XWikiServerMyWiki"));
+    }
+}
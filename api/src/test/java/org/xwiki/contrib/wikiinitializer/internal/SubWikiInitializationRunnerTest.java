@@ -0,0 +1,162 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationException;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.test.annotation.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SubWikiInitializationRunner}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class SubWikiInitializationRunnerTest
+{
+    @InjectMockComponents
+    private SubWikiInitializationRunner runner;
+
+    @MockComponent
+    private WikiInitializationExecutor executor;
+
+    private final WikiInitializerConfiguration configuration = mock(WikiInitializerConfiguration.class);
+
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+
+    private final List<String> processedWikis = new ArrayList<>();
+
+    private final SubWikiInitializationRunner.Monitor monitor = new SubWikiInitializationRunner.Monitor()
+    {
+        @Override
+        public boolean isCanceled()
+        {
+            return false;
+        }
+
+        @Override
+        public void wikiProcessed(String wikiId)
+        {
+            processedWikis.add(wikiId);
+        }
+    };
+
+    @BeforeEach
+    void configure()
+    {
+        when(this.configuration.getParallelism()).thenReturn(2);
+        when(this.configuration.getMaxRetries()).thenReturn(2);
+        when(this.configuration.getRetryDelay()).thenReturn(Duration.ofMillis(1));
+
+        // The "flaky" wiki fails on its first attempt and the wikis starting with "broken" always fail.
+        when(this.executor.initialize(any(), anyInt(), any(), any(), any())).thenAnswer(invocation -> {
+            Collection<WikiDescriptor> descriptors = invocation.getArgument(0);
+            Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+            for (WikiDescriptor descriptor : descriptors) {
+                int attempt = this.attempts.merge(descriptor.getId(), 1, Integer::sum);
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                if (descriptor.getId().startsWith("broken") || ("flaky".equals(descriptor.getId()) && attempt == 1)) {
+                    future.completeExceptionally(new WikiInitializationException("error"));
+                } else {
+                    future.complete(null);
+                }
+                futures.put(descriptor.getId(), future);
+            }
+            return futures;
+        });
+    }
+
+    @Test
+    void retryTheFailedWikis()
+    {
+        WikiInitializationSummary summary =
+            this.runner.run(createDescriptors("ok", "flaky", "broken"), this.configuration, this.monitor);
+
+        assertEquals(Arrays.asList("ok", "flaky"), summary.getInitializedWikis());
+        assertEquals(Collections.singleton("broken"), summary.getFailedWikis().keySet());
+        assertEquals(Integer.valueOf(1), this.attempts.get("ok"));
+        assertEquals(Integer.valueOf(2), this.attempts.get("flaky"));
+        // The first attempt and the 2 retries.
+        assertEquals(Integer.valueOf(3), this.attempts.get("broken"));
+        assertEquals(Arrays.asList("ok", "flaky", "broken"), this.processedWikis);
+    }
+
+    @Test
+    void failWithoutRetry()
+    {
+        when(this.configuration.getMaxRetries()).thenReturn(0);
+
+        WikiInitializationSummary summary =
+            this.runner.run(createDescriptors("ok", "flaky"), this.configuration, this.monitor);
+
+        assertEquals(Collections.singletonList("ok"), summary.getInitializedWikis());
+        assertEquals(Collections.singleton("flaky"), summary.getFailedWikis().keySet());
+        assertEquals(Integer.valueOf(1), this.attempts.get("flaky"));
+    }
+
+    @Test
+    void failTheWikisPartOfACycle()
+    {
+        when(this.configuration.getWikiDependencies())
+            .thenReturn(Map.of("a", Collections.singletonList("b"), "b", Collections.singletonList("a")));
+
+        WikiInitializationSummary summary =
+            this.runner.run(createDescriptors("a", "b", "ok"), this.configuration, this.monitor);
+
+        assertEquals(Collections.singletonList("ok"), summary.getInitializedWikis());
+        assertTrue(summary.getFailedWikis().keySet().containsAll(Arrays.asList("a", "b")));
+        assertFalse(this.attempts.containsKey("a"));
+        assertFalse(this.attempts.containsKey("b"));
+    }
+
+    private static List<WikiDescriptor> createDescriptors(String... wikiIds)
+    {
+        List<WikiDescriptor> descriptors = new ArrayList<>();
+        for (String wikiId : wikiIds) {
+            descriptors.add(new WikiDescriptor(wikiId, wikiId));
+        }
+
+        return descriptors;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link WikiDependencyGraph}.
+ *
+ * @version $Id$
+ */
+class WikiDependencyGraphTest
+{
+    private final Map<String, List<String>> dependencies = new HashMap<>();
+
+    @Test
+    void orderWithoutDependencies()
+    {
+        WikiDependencyGraph graph = createGraph("a", "b", "c");
+
+        assertEquals(Arrays.asList("a", "b", "c"), getOrder(graph));
+        assertTrue(graph.getDependencies().isEmpty());
+        assertTrue(graph.getCyclicWikis().isEmpty());
+    }
+
+    @Test
+    void orderAfterDependencies()
+    {
+        this.dependencies.put("a", Arrays.asList("c"));
+        this.dependencies.put("b", Arrays.asList("a", "d"));
+
+        WikiDependencyGraph graph = createGraph("a", "b", "c", "d");
+
+        // The sub-wikis keep their preferred order as long as their dependencies are satisfied.
+        assertEquals(Arrays.asList("c", "a", "d", "b"), getOrder(graph));
+        assertEquals(Collections.singleton("c"), graph.getDependencies().get("a"));
+        assertEquals(Set.of("a", "d"), graph.getDependencies().get("b"));
+        assertTrue(graph.getCyclicWikis().isEmpty());
+    }
+
+    @Test
+    void ignoreDependenciesOutsideOfTheGraph()
+    {
+        this.dependencies.put("b", Arrays.asList("unknown", "a"));
+
+        WikiDependencyGraph graph = createGraph("b", "a");
+
+        assertEquals(Arrays.asList("a", "b"), getOrder(graph));
+        assertEquals(Collections.singleton("a"), graph.getDependencies().get("b"));
+    }
+
+    @Test
+    void leaveCyclesOut()
+    {
+        this.dependencies.put("a", Arrays.asList("b"));
+        this.dependencies.put("b", Arrays.asList("a"));
+        this.dependencies.put("c", Arrays.asList("b"));
+        this.dependencies.put("e", Arrays.asList("e"));
+
+        WikiDependencyGraph graph = createGraph("a", "b", "c", "d", "e");
+
+        // The sub-wikis depending on a cycle are left out as well.
+        assertEquals(Arrays.asList("d"), getOrder(graph));
+        assertEquals(Arrays.asList("a", "b", "c", "e"), graph.getCyclicWikis());
+    }
+
+    @Test
+    void getCriticalPath()
+    {
+        this.dependencies.put("b", Arrays.asList("a"));
+        this.dependencies.put("c", Arrays.asList("a"));
+        this.dependencies.put("d", Arrays.asList("b", "c"));
+
+        WikiDependencyGraph graph = createGraph("a", "b", "c", "d");
+        Map<String, Long> durations = Map.of("a", 10L, "b", 5L, "c", 20L, "d", 1L);
+
+        assertEquals(Arrays.asList("a", "c", "d"), graph.getCriticalPath(durations::get));
+    }
+
+    private WikiDependencyGraph createGraph(String... wikiIds)
+    {
+        List<WikiDescriptor> descriptors =
+            Arrays.stream(wikiIds).map(wikiId -> new WikiDescriptor(wikiId, wikiId)).collect(Collectors.toList());
+
+        return new WikiDependencyGraph(descriptors, this::getDependencies);
+    }
+
+    private Collection<String> getDependencies(WikiDescriptor descriptor)
+    {
+        return this.dependencies.getOrDefault(descriptor.getId(), Collections.emptyList());
+    }
+
+    private static List<String> getOrder(WikiDependencyGraph graph)
+    {
+        return graph.getOrder().stream().map(WikiDescriptor::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationException;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.test.annotation.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link WikiInitializationExecutor}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class WikiInitializationExecutorTest
+{
+    private static final WikiDescriptor SLOW = new WikiDescriptor("slow", "slow");
+
+    private static final WikiDescriptor FAST = new WikiDescriptor("fast", "fast");
+
+    private static final Duration TIMEOUT = Duration.ofMillis(100);
+
+    @InjectMockComponents
+    private WikiInitializationExecutor executor;
+
+    @MockComponent
+    private WikiInitializationManager manager;
+
+    @MockComponent
+    private WikiInitializerConfiguration configuration;
+
+    @MockComponent
+    private Execution execution;
+
+    @MockComponent
+    private ExecutionContextManager executionContextManager;
+
+    @Test
+    void initializeWithTimeout() throws Exception
+    {
+        doAnswer(invocation -> {
+            Thread.sleep(10000);
+            return null;
+        }).when(this.manager).initialize(SLOW);
+
+        Map<String, CompletableFuture<Void>> futures =
+            this.executor.initialize(Collections.singletonList(SLOW), 1, TIMEOUT);
+
+        ExecutionException exception =
+            assertThrows(ExecutionException.class, () -> futures.get("slow").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(WikiInitializationException.class, exception.getCause());
+        assertEquals("Initialization of wiki [slow] timed out after [100] ms", exception.getCause().getMessage());
+    }
+
+    @Test
+    void timeoutDoesNotInterruptTheNextInitialization() throws Exception
+    {
+        doAnswer(invocation -> {
+            Thread.sleep(10000);
+            return null;
+        }).when(this.manager).initialize(SLOW);
+        AtomicBoolean interrupted = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            interrupted.set(Thread.currentThread().isInterrupted());
+            return null;
+        }).when(this.manager).initialize(FAST);
+
+        // A single worker initializes both wikis, one after the other.
+        Map<String, CompletableFuture<Void>> futures = this.executor.initialize(Arrays.asList(SLOW, FAST), 1, TIMEOUT);
+
+        futures.get("fast").get(5, TimeUnit.SECONDS);
+        assertTrue(futures.get("slow").isCompletedExceptionally());
+        assertFalse(interrupted.get());
+    }
+
+    @Test
+    void timeoutReleasesTheWorkerOfAnInitializationIgnoringInterruptions() throws Exception
+    {
+        CountDownLatch unblock = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            // Like a socket read, which ignores interruptions.
+            while (unblock.getCount() > 0) {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    // Ignored
+                }
+            }
+            return null;
+        }).when(this.manager).initialize(SLOW);
+
+        try {
+            // The single worker is stuck on the first wiki, the second one is initialized by a replacement worker.
+            Map<String, CompletableFuture<Void>> futures =
+                this.executor.initialize(Arrays.asList(SLOW, FAST), 1, TIMEOUT);
+
+            futures.get("fast").get(5, TimeUnit.SECONDS);
+            assertTrue(futures.get("slow").isCompletedExceptionally());
+            // The next attempts to initialize the stuck wiki don't wait for it.
+            verify(this.manager, timeout(5000)).abandon("slow");
+        } finally {
+            unblock.countDown();
+        }
+    }
+
+    @Test
+    void failTheDependentsOfAFailedWiki() throws Exception
+    {
+        doThrow(new WikiInitializationException("error")).when(this.manager).initialize(SLOW);
+
+        List<WikiDescriptor> descriptors = Arrays.asList(SLOW, FAST);
+        Map<String, CompletableFuture<Void>> futures = this.executor.initialize(descriptors, 2, null, null,
+            Collections.singletonMap("fast", Collections.singletonList("slow")));
+
+        ExecutionException exception =
+            assertThrows(ExecutionException.class, () -> futures.get("fast").get(5, TimeUnit.SECONDS));
+        assertEquals("A wiki that wiki [fast] depends on could not be initialized",
+            exception.getCause().getMessage());
+        verify(this.manager, never()).initialize(FAST);
+    }
+
+    @Test
+    void cancelTheInitializationsOnceStopped() throws Exception
+    {
+        this.executor.stop();
+
+        Map<String, CompletableFuture<Void>> futures =
+            this.executor.initialize(Collections.singletonList(FAST), 1, TIMEOUT);
+
+        assertTrue(futures.get("fast").isCancelled());
+        verify(this.manager, never()).initialize(any());
+    }
+}
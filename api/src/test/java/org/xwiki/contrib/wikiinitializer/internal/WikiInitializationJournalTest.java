@@ -0,0 +1,217 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.extension.CoreExtension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.InstalledExtension;
+import org.xwiki.extension.repository.CoreExtensionRepository;
+import org.xwiki.extension.repository.InstalledExtensionRepository;
+import org.xwiki.test.annotation.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.store.migration.DataMigrationException;
+import com.xpn.xwiki.store.migration.DataMigrationManager;
+import com.xpn.xwiki.store.migration.XWikiDBVersion;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link WikiInitializationJournal}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class WikiInitializationJournalTest
+{
+    private static final String WIKI = "wiki";
+
+    private static final String MAIN_WIKI = "xwiki";
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    private WikiInitializerStore store;
+
+    private XWikiContext context;
+
+    private DataMigrationManager dataMigrationManager;
+
+    private InstalledExtensionRepository installedExtensionRepository;
+
+    private CoreExtension environmentExtension;
+
+    private WikiInitializationJournal journal;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.store = this.componentManager.registerMockComponent(WikiInitializerStore.class);
+        when(this.store.load(anyString())).thenReturn(new Properties());
+
+        this.context = mock(XWikiContext.class);
+        when(this.context.getWikiId()).thenReturn(MAIN_WIKI);
+        when(this.context.clone()).thenReturn(this.context);
+        Provider<XWikiContext> contextProvider =
+            this.componentManager.registerMockComponent(XWikiContext.TYPE_PROVIDER);
+        when(contextProvider.get()).thenReturn(this.context);
+
+        this.dataMigrationManager =
+            this.componentManager.registerMockComponent(DataMigrationManager.class, "hibernate");
+        when(this.dataMigrationManager.getDBVersion()).thenReturn(new XWikiDBVersion(140000));
+        when(this.dataMigrationManager.getLatestVersion()).thenReturn(new XWikiDBVersion(140000));
+
+        this.installedExtensionRepository =
+            this.componentManager.registerMockComponent(InstalledExtensionRepository.class);
+
+        this.environmentExtension = mock(CoreExtension.class);
+        when(this.environmentExtension.getId()).thenReturn(new ExtensionId("distribution", "14.10"));
+        CoreExtensionRepository coreExtensionRepository =
+            this.componentManager.registerMockComponent(CoreExtensionRepository.class);
+        when(coreExtensionRepository.getEnvironmentExtension()).thenReturn(this.environmentExtension);
+
+        this.componentManager.registerMockComponent(Execution.class);
+        this.componentManager.registerMockComponent(ExecutionContextManager.class);
+
+        this.componentManager.registerComponent(WikiInitializationJournal.class);
+        this.journal = this.componentManager.getInstance(WikiInitializationJournal.class);
+    }
+
+    @Test
+    void isUnchangedAfterInitialization()
+    {
+        assertFalse(this.journal.isUnchanged(WIKI));
+
+        this.journal.recordInitialization(WIKI);
+
+        assertTrue(this.journal.isUnchanged(WIKI));
+        assertFalse(this.journal.isUnchanged("other"));
+        // The fingerprint is computed on the wiki, and the context is restored afterwards.
+        verify(this.context, times(2)).setWikiId(WIKI);
+        verify(this.context, times(2)).setWikiId(MAIN_WIKI);
+    }
+
+    @Test
+    void isChangedWhenTheDatabaseVersionChanges() throws Exception
+    {
+        this.journal.recordInitialization(WIKI);
+
+        when(this.dataMigrationManager.getDBVersion()).thenReturn(new XWikiDBVersion(150000));
+
+        assertFalse(this.journal.isUnchanged(WIKI));
+    }
+
+    @Test
+    void isChangedWhenXWikiIsUpgraded() throws Exception
+    {
+        this.journal.recordInitialization(WIKI);
+
+        when(this.dataMigrationManager.getLatestVersion()).thenReturn(new XWikiDBVersion(150000));
+        assertFalse(this.journal.isUnchanged(WIKI));
+
+        when(this.dataMigrationManager.getLatestVersion()).thenReturn(new XWikiDBVersion(140000));
+        when(this.environmentExtension.getId()).thenReturn(new ExtensionId("distribution", "15.10"));
+        assertFalse(this.journal.isUnchanged(WIKI));
+    }
+
+    @Test
+    void isChangedWhenAnExtensionIsInstalledOnTheWiki()
+    {
+        this.journal.recordInitialization(WIKI);
+
+        InstalledExtension extension = mock(InstalledExtension.class);
+        when(extension.getId()).thenReturn(new ExtensionId("extension", "1.0"));
+        when(this.installedExtensionRepository.getInstalledExtensions("wiki:" + WIKI))
+            .thenReturn(Collections.singletonList(extension));
+
+        assertFalse(this.journal.isUnchanged(WIKI));
+    }
+
+    @Test
+    void isChangedWhenTheFingerprintCannotBeComputed() throws Exception
+    {
+        this.journal.recordInitialization(WIKI);
+
+        when(this.dataMigrationManager.getDBVersion()).thenThrow(new DataMigrationException("error"));
+
+        assertFalse(this.journal.isUnchanged(WIKI));
+    }
+
+    @Test
+    void getUnchangedWikis() throws Exception
+    {
+        this.journal.recordInitialization(WIKI);
+        this.journal.recordInitialization("changed");
+        when(this.dataMigrationManager.getDBVersion()).thenReturn(new XWikiDBVersion(140000),
+            new XWikiDBVersion(150000));
+
+        assertEquals(Collections.singleton(WIKI),
+            this.journal.getUnchangedWikis(Arrays.asList(WIKI, "changed", "other"), 1));
+        // The wikis never initialized are not checked, and what the wikis share is only computed once.
+        verify(this.context, times(2)).setWikiId(WIKI);
+        verify(this.context, never()).setWikiId("other");
+        verify(this.dataMigrationManager, times(3)).getLatestVersion();
+    }
+
+    @Test
+    void getUnchangedWikisConcurrently()
+    {
+        this.journal.recordInitialization(WIKI);
+        this.journal.recordInitialization("other");
+
+        assertEquals(new HashSet<>(Arrays.asList(WIKI, "other")),
+            new HashSet<>(this.journal.getUnchangedWikis(Arrays.asList(WIKI, "other", "new"), 4)));
+    }
+
+    @Test
+    void save()
+    {
+        this.journal.recordInitialization(WIKI);
+        this.journal.save();
+
+        ArgumentCaptor<Properties> properties = ArgumentCaptor.forClass(Properties.class);
+        verify(this.store).save(eq("journal"), properties.capture(), any());
+        assertEquals(Collections.singleton(WIKI), properties.getValue().stringPropertyNames());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.inject.Named;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationState;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.job.Job;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.test.annotation.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import com.xpn.xwiki.internal.XWikiInitializerJob;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link WikiInitializationReadiness}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class WikiInitializationReadinessTest
+{
+    private static final String MAIN_WIKI = "xwiki";
+
+    private static final String WIKI_A = "a";
+
+    private static final String WIKI_B = "b";
+
+    @InjectMockComponents
+    private WikiInitializationReadiness readiness;
+
+    @MockComponent
+    private WikiInitializerConfiguration configuration;
+
+    @MockComponent
+    private WikiInitializationManager manager;
+
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @MockComponent
+    @Named(XWikiInitializerJob.JOBTYPE)
+    private Job xwikiInitializerJob;
+
+    private JobStatus xwikiInitializerStatus;
+
+    @BeforeEach
+    void setUp()
+    {
+        this.xwikiInitializerStatus = mock(JobStatus.class);
+        when(this.xwikiInitializerStatus.getState()).thenReturn(JobStatus.State.FINISHED);
+        when(this.xwikiInitializerJob.getStatus()).thenReturn(this.xwikiInitializerStatus);
+    }
+
+    @Test
+    void mainWikiIsReadyOnceXWikiIsInitialized()
+    {
+        when(this.configuration.initializeMainWiki()).thenReturn(true);
+        when(this.manager.getState(MAIN_WIKI)).thenReturn(WikiInitializationState.INITIALIZED);
+        when(this.xwikiInitializerStatus.getState()).thenReturn(JobStatus.State.RUNNING);
+
+        // XWiki.getXWiki(false) returned, but XWiki is still initializing in the background.
+        assertFalse(this.readiness.isReady());
+        assertEquals(Collections.singletonMap(MAIN_WIKI, WikiInitializationState.INITIALIZING),
+            this.readiness.getReadinessStates());
+
+        when(this.xwikiInitializerStatus.getState()).thenReturn(JobStatus.State.FINISHED);
+
+        assertTrue(this.readiness.isReady());
+        assertEquals(Collections.singletonMap(MAIN_WIKI, WikiInitializationState.INITIALIZED),
+            this.readiness.getReadinessStates());
+    }
+
+    @Test
+    void mainWikiIsNotReadyBeforeXWikiStartsInitializing()
+    {
+        when(this.configuration.initializeMainWiki()).thenReturn(true);
+        when(this.manager.getState(MAIN_WIKI)).thenReturn(WikiInitializationState.INITIALIZED);
+        when(this.xwikiInitializerJob.getStatus()).thenReturn(null);
+
+        assertFalse(this.readiness.isReady());
+    }
+
+    @Test
+    void mainWikiIsIgnoredWhenNotInitializedByTheWikiInitializer()
+    {
+        when(this.manager.getState(MAIN_WIKI)).thenReturn(WikiInitializationState.NOT_INITIALIZED);
+
+        assertTrue(this.readiness.isReady());
+    }
+
+    @Test
+    void readinessWikis()
+    {
+        when(this.configuration.getReadinessWikis()).thenReturn(Arrays.asList(WIKI_A, WIKI_B));
+        when(this.manager.isInitialized(WIKI_A)).thenReturn(true);
+
+        assertFalse(this.readiness.isReady());
+
+        when(this.manager.isInitialized(WIKI_B)).thenReturn(true);
+
+        assertTrue(this.readiness.isReady());
+    }
+
+    @Test
+    void readinessPercentageOfThePlannedWikis()
+    {
+        when(this.configuration.getReadinessPercentage()).thenReturn(50);
+        when(this.manager.isInitialized(WIKI_A)).thenReturn(true);
+
+        // Nothing is planned yet.
+        assertFalse(this.readiness.isReady());
+
+        this.readiness.startPlan();
+        this.readiness.addPlannedWikis(Arrays.asList(WIKI_A, WIKI_B));
+
+        // More sub-wikis may be planned.
+        assertFalse(this.readiness.isReady());
+
+        this.readiness.completePlan();
+
+        assertTrue(this.readiness.isReady());
+
+        this.readiness.startPlan();
+        this.readiness.addPlannedWikis(Arrays.asList(WIKI_A, WIKI_B, "c"));
+        this.readiness.completePlan();
+
+        assertFalse(this.readiness.isReady());
+    }
+}
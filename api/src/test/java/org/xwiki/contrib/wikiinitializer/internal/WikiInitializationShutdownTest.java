@@ -0,0 +1,143 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobExecutor;
+import org.xwiki.job.event.status.CancelableJobStatus;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.test.annotation.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link WikiInitializationShutdown}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class WikiInitializationShutdownTest
+{
+    @InjectMockComponents
+    private WikiInitializationShutdown shutdown;
+
+    @MockComponent
+    private WikiInitializerConfiguration configuration;
+
+    @MockComponent
+    private JobExecutor jobExecutor;
+
+    @MockComponent
+    private WikiInitializationExecutor executor;
+
+    private Job job;
+
+    private CancelableJobStatus jobStatus;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        when(this.configuration.getShutdownGracePeriod()).thenReturn(Duration.ofSeconds(5));
+
+        this.jobStatus = mock(CancelableJobStatus.class);
+        when(this.jobStatus.getState()).thenReturn(JobStatus.State.RUNNING);
+        this.job = mock(Job.class);
+        when(this.job.getStatus()).thenReturn(this.jobStatus);
+        when(this.jobExecutor.getJob(WikiInitializationManager.SUBWIKIS_INITIALIZATION_JOB_ID)).thenReturn(this.job);
+        when(this.job.join(anyLong(), any())).thenReturn(true);
+    }
+
+    @Test
+    void shutdownDoesNotWaitForTheGracePeriod() throws Exception
+    {
+        CountDownLatch initializationsDone = new CountDownLatch(1);
+        when(this.executor.awaitInitializations(any())).thenAnswer(invocation -> {
+            initializationsDone.await();
+            return true;
+        });
+
+        try {
+            // Returns while the initializations in progress are still running.
+            this.shutdown.shutdown();
+
+            verify(this.jobStatus).cancel();
+            verify(this.executor).stop();
+            verify(this.executor, timeout(5000)).awaitInitializations(any());
+            assertEquals(1, initializationsDone.getCount());
+        } finally {
+            initializationsDone.countDown();
+        }
+
+        verify(this.job, timeout(5000)).join(anyLong(), any());
+        verify(this.executor, after(200).never()).interrupt();
+    }
+
+    @Test
+    void interruptTheInitializationsStillRunningAfterTheGracePeriod() throws Exception
+    {
+        when(this.executor.awaitInitializations(any())).thenReturn(false);
+
+        this.shutdown.shutdown();
+
+        verify(this.executor, timeout(5000)).interrupt();
+    }
+
+    @Test
+    void interruptTheJobStillRunningAfterTheGracePeriod() throws Exception
+    {
+        when(this.executor.awaitInitializations(any())).thenReturn(true);
+        when(this.job.join(anyLong(), any())).thenReturn(false);
+
+        this.shutdown.shutdown();
+
+        verify(this.executor, timeout(5000)).interrupt();
+    }
+
+    @Test
+    void shutdownOnlyOnce() throws Exception
+    {
+        when(this.executor.awaitInitializations(any())).thenReturn(true);
+
+        this.shutdown.shutdown();
+        this.shutdown.shutdown();
+        this.shutdown.dispose();
+
+        verify(this.jobStatus, times(1)).cancel();
+        verify(this.executor, times(1)).stop();
+        verify(this.executor, timeout(5000).times(1)).awaitInitializations(any());
+    }
+}
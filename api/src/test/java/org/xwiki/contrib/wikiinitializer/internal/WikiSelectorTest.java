@@ -0,0 +1,128 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+import org.xwiki.wiki.properties.WikiPropertyGroup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link WikiSelector}.
+ *
+ * @version $Id$
+ */
+class WikiSelectorTest
+{
+    private static final List<String> NONE = Collections.emptyList();
+
+    @Test
+    void matchesNothingWithoutSelection()
+    {
+        WikiSelector selector = new WikiSelector(NONE, Arrays.asList("excluded"), NONE, NOPLogger.NOP_LOGGER);
+
+        assertFalse(selector.isSelecting());
+        assertFalse(selector.matches(new WikiDescriptor("wiki", "wiki")));
+        assertTrue(selector.isExcluded("excluded"));
+    }
+
+    @Test
+    void matchesGlobs()
+    {
+        WikiSelector selector =
+            new WikiSelector(Arrays.asList("team-*", "wiki?"), Arrays.asList("team-old*"), NONE, NOPLogger.NOP_LOGGER);
+
+        assertTrue(selector.isSelecting());
+        assertTrue(selector.matches(new WikiDescriptor("team-a", "team-a")));
+        assertTrue(selector.matches(new WikiDescriptor("wiki1", "wiki1")));
+        assertFalse(selector.matches(new WikiDescriptor("wiki12", "wiki12")));
+        assertFalse(selector.matches(new WikiDescriptor("myteam-a", "myteam-a")));
+        // Excluded wikis are never selected.
+        assertFalse(selector.matches(new WikiDescriptor("team-old1", "team-old1")));
+    }
+
+    @Test
+    void globsMatchRegexCharactersLiterally()
+    {
+        WikiSelector selector = new WikiSelector(Arrays.asList("a.b*"), NONE, NONE, NOPLogger.NOP_LOGGER);
+
+        assertTrue(selector.matches(new WikiDescriptor("a.bc", "a.bc")));
+        assertFalse(selector.matches(new WikiDescriptor("axbc", "axbc")));
+    }
+
+    @Test
+    void matchesRegularExpressions()
+    {
+        WikiSelector selector =
+            new WikiSelector(Arrays.asList("regex:wiki[0-9]+"), NONE, NONE, NOPLogger.NOP_LOGGER);
+
+        assertTrue(selector.matches(new WikiDescriptor("wiki12", "wiki12")));
+        assertFalse(selector.matches(new WikiDescriptor("wikiA", "wikiA")));
+    }
+
+    @Test
+    void ignoreInvalidPatternsAndCriteria()
+    {
+        WikiSelector selector = new WikiSelector(Arrays.asList("regex:[", "wiki"), NONE,
+            Arrays.asList("unknown=value", "owner=regex:("), NOPLogger.NOP_LOGGER);
+
+        assertTrue(selector.matches(new WikiDescriptor("wiki", "wiki")));
+        assertFalse(selector.matches(new WikiDescriptor("other", "other")));
+    }
+
+    @Test
+    void matchesDescriptorProperties()
+    {
+        WikiSelector selector = new WikiSelector(NONE, NONE,
+            Arrays.asList("owner = XWiki.Admin", "group.tier = gold*"), NOPLogger.NOP_LOGGER);
+
+        WikiDescriptor descriptor = new WikiDescriptor("wiki", "wiki");
+        descriptor.setOwnerId("XWiki.Admin");
+        assertFalse(selector.matches(descriptor));
+
+        WikiPropertyGroup group = new WikiPropertyGroup("group");
+        group.set("tier", "gold-plus");
+        descriptor.addPropertyGroup(group);
+        assertTrue(selector.matches(descriptor));
+
+        descriptor.setOwnerId("XWiki.Other");
+        assertFalse(selector.matches(descriptor));
+    }
+
+    @Test
+    void getProperty()
+    {
+        WikiDescriptor descriptor = new WikiDescriptor("wiki", "alias");
+        descriptor.setPrettyName("Pretty");
+
+        assertEquals("wiki", WikiSelector.getProperty(descriptor, "id"));
+        assertEquals("Pretty", WikiSelector.getProperty(descriptor, "prettyName"));
+        assertNull(WikiSelector.getProperty(descriptor, "missing.property"));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.benchmarks;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers shared by the benchmarks.
+ *
+ * @version $Id$
+ */
+public final class BenchmarkUtils
+{
+    private static final String PREFIX = "wikiInitializer.initialRequest.";
+
+    private static final String VALUE_SUFFIX = ".value";
+
+    private BenchmarkUtils()
+    {
+        // Utility class
+    }
+
+    /**
+     * Create a configuration with the given number of initial request parameters, headers and cookies, each
+     * parameter and header having two values.
+     *
+     * @param entries the number of parameters, headers and cookies
+     * @return the configuration
+     */
+    public static MapConfigurationSource createConfiguration(int entries)
+    {
+        MapConfigurationSource configuration = new MapConfigurationSource();
+
+        try {
+            configuration.setProperty(PREFIX + "url", new URL("http://localhost:8080/xwiki/bin/view/Main/"));
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+        configuration.setProperty(PREFIX + "contextPath", "/xwiki");
+        configuration.setProperty(PREFIX + "remoteAddress", "127.0.0.1");
+
+        addEntries(configuration, "parameters", entries, 2);
+        addEntries(configuration, "headers", entries, 2);
+        addEntries(configuration, "cookies", entries, 0);
+
+        List<String> cookieNames = configuration.getProperty(PREFIX + "cookies");
+        for (String cookieName : cookieNames) {
+            configuration.setProperty(PREFIX + "cookies." + cookieName + VALUE_SUFFIX, cookieName + "-value");
+        }
+
+        return configuration;
+    }
+
+    private static void addEntries(MapConfigurationSource configuration, String type, int entries, int values)
+    {
+        List<String> names = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            String name = type + i;
+            names.add(name);
+
+            if (values > 0) {
+                List<String> entryValues = new ArrayList<>(values);
+                for (int j = 0; j < values; j++) {
+                    entryValues.add(name + "-value" + j);
+                }
+                configuration.setProperty(PREFIX + type + '.' + name + VALUE_SUFFIX, entryValues);
+            }
+        }
+        configuration.setProperty(PREFIX + type, names);
+    }
+}
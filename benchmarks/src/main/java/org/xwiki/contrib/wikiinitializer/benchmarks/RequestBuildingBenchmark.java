@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.helpers.NOPLogger;
+import org.xwiki.contrib.wikiinitializer.internal.InitialRequestTemplate;
+import org.xwiki.contrib.wikiinitializer.internal.WikiInitializerConfigurationSnapshot;
+
+import com.xpn.xwiki.web.XWikiServletRequestStub;
+
+/**
+ * Measure the cost of building the initialization request, from the pre-computed template and from the raw
+ * configuration values as done before the template existed.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuildingBenchmark
+{
+    private static final String DEFAULT_CONTEXT_PATH = "/xwiki";
+
+    @Param({ "10", "100", "1000" })
+    private int entries;
+
+    private WikiInitializerConfigurationSnapshot snapshot;
+
+    /**
+     * Prepare the configuration.
+     */
+    @Setup
+    public void setUp()
+    {
+        this.snapshot = new WikiInitializerConfigurationSnapshot(BenchmarkUtils.createConfiguration(this.entries),
+            NOPLogger.NOP_LOGGER);
+    }
+
+    /**
+     * @return a request created from the pre-computed template
+     */
+    @Benchmark
+    public XWikiServletRequestStub fromTemplate()
+    {
+        return this.snapshot.getInitialRequestTemplate().createRequest(DEFAULT_CONTEXT_PATH);
+    }
+
+    /**
+     * @return a request created from the configuration values
+     */
+    @Benchmark
+    public XWikiServletRequestStub fromConfiguration()
+    {
+        return new InitialRequestTemplate(this.snapshot.getInitialRequestURL(),
+            this.snapshot.getInitialRequestContextPath(), this.snapshot.getInitialRequestParameters(),
+            this.snapshot.getInitialRequestHeaders(), this.snapshot.getInitialRequestCookies(),
+            this.snapshot.getInitialRequestRemoteAddr()).createRequest(DEFAULT_CONTEXT_PATH);
+    }
+}
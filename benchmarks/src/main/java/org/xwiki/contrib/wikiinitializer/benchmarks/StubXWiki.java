@@ -0,0 +1,57 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.xwiki.job.Job;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * {@link XWiki} whose wiki initialization only simulates a blocking operation of a fixed duration, as the database
+ * and filesystem access done by a real initialization.
+ *
+ * @version $Id$
+ */
+public class StubXWiki extends XWiki
+{
+    private final long initializationNanos;
+
+    /**
+     * @param initializationMicros the simulated duration of the initialization of a wiki, in microseconds
+     */
+    public StubXWiki(long initializationMicros)
+    {
+        this.initializationNanos = TimeUnit.MICROSECONDS.toNanos(initializationMicros);
+    }
+
+    @Override
+    public Job initializeWiki(String wikiId, boolean wait, XWikiContext xcontext)
+    {
+        if (this.initializationNanos > 0) {
+            LockSupport.parkNanos(this.initializationNanos);
+        }
+
+        return null;
+    }
+}
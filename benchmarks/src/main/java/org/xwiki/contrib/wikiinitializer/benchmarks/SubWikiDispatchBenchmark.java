@@ -0,0 +1,227 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wikiinitializer.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.context.internal.DefaultExecution;
+import org.xwiki.contrib.wikiinitializer.WikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.WikiInitializerConfiguration;
+import org.xwiki.contrib.wikiinitializer.internal.DefaultWikiInitializationManager;
+import org.xwiki.contrib.wikiinitializer.internal.DefaultWikiInitializerConfiguration;
+import org.xwiki.contrib.wikiinitializer.internal.DistributionWizardStarter;
+import org.xwiki.contrib.wikiinitializer.internal.SubWikiInitializationRunner;
+import org.xwiki.contrib.wikiinitializer.internal.WikiAccessTracker;
+import org.xwiki.contrib.wikiinitializer.internal.WikiCacheWarmer;
+import org.xwiki.contrib.wikiinitializer.internal.WikiInitializationExecutor;
+import org.xwiki.contrib.wikiinitializer.internal.WikiInitializationHistory;
+import org.xwiki.contrib.wikiinitializer.internal.WikiInitializationJournal;
+import org.xwiki.contrib.wikiinitializer.internal.WikiInitializationMetrics;
+import org.xwiki.contrib.wikiinitializer.internal.WikiInitializationSummary;
+import org.xwiki.contrib.wikiinitializer.internal.WikiInitializerStore;
+import org.xwiki.environment.Environment;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.test.mockito.MockitoComponentManager;
+import org.xwiki.wiki.descriptor.WikiDescriptor;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measure the dispatch of the initialization of N synthetic sub-wikis, as done by the sub-wikis initialization job,
+ * against an {@link com.xpn.xwiki.XWiki#initializeWiki} stub simulating a blocking initialization.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SubWikiDispatchBenchmark
+{
+    private static final SubWikiInitializationRunner.Monitor MONITOR = new SubWikiInitializationRunner.Monitor()
+    {
+        @Override
+        public boolean isCanceled()
+        {
+            return false;
+        }
+
+        @Override
+        public void wikiProcessed(String wikiId)
+        {
+            // Nothing to report
+        }
+    };
+
+    @Param({ "100", "1000" })
+    private int wikiCount;
+
+    @Param({ "1", "4", "16" })
+    private int parallelism;
+
+    @Param({ "0", "1000" })
+    private long initializationMicros;
+
+    @Param({ "false", "true" })
+    private boolean adaptive;
+
+    @Param({ "false", "true" })
+    private boolean virtualThreads;
+
+    private List<WikiDescriptor> descriptors;
+
+    private MockitoComponentManager componentManager;
+
+    private SubWikiInitializationRunner runner;
+
+    private WikiInitializerConfiguration configuration;
+
+    private WikiInitializationManager manager;
+
+    /**
+     * Register the components involved in the dispatch, mocking the ones it doesn't rely on, and prepare the wiki
+     * descriptors.
+     *
+     * @throws Exception if the components cannot be registered
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.descriptors = new ArrayList<>(this.wikiCount);
+        for (int i = 0; i < this.wikiCount; i++) {
+            String wikiId = "wiki" + i;
+            this.descriptors.add(new WikiDescriptor(wikiId, wikiId));
+        }
+
+        this.componentManager = new MockitoComponentManager();
+
+        MapConfigurationSource configurationSource = new MapConfigurationSource();
+        configurationSource.setProperty("wikiInitializer.parallelism", this.parallelism);
+        configurationSource.setProperty("wikiInitializer.parallelism.adaptive", this.adaptive);
+        configurationSource.setProperty("wikiInitializer.virtualThreads", this.virtualThreads);
+        this.componentManager.registerComponent(ConfigurationSource.class, "xwikiproperties", configurationSource);
+
+        XWikiContext baseContext = new XWikiContext();
+        baseContext.setWiki(new StubXWiki(this.initializationMicros));
+
+        this.componentManager.registerComponent(DefaultExecution.class);
+        Execution execution = this.componentManager.getInstance(Execution.class);
+        this.componentManager.registerComponent(ExecutionContextManager.class,
+            createExecutionContextManager(execution));
+        Provider<XWikiContext> contextProvider = () -> {
+            ExecutionContext executionContext = execution.getContext();
+            XWikiContext context = (executionContext != null)
+                ? (XWikiContext) executionContext.getProperty(XWikiContext.EXECUTIONCONTEXT_KEY) : null;
+            return (context != null) ? context : baseContext;
+        };
+        this.componentManager.registerComponent(
+            new DefaultParameterizedType(null, Provider.class, XWikiContext.class), contextProvider);
+
+        WikiInitializerStore store = this.componentManager.registerMockComponent(WikiInitializerStore.class);
+        when(store.load(anyString())).thenAnswer(invocation -> new Properties());
+        this.componentManager.registerMockComponent(JMXBeanRegistration.class);
+        this.componentManager.registerMockComponent(Environment.class);
+        this.componentManager.registerMockComponent(WikiCacheWarmer.class);
+        this.componentManager.registerMockComponent(WikiInitializationJournal.class);
+        this.componentManager.registerMockComponent(DistributionWizardStarter.class);
+
+        this.componentManager.registerComponent(DefaultWikiInitializerConfiguration.class);
+        this.componentManager.registerComponent(WikiInitializationMetrics.class);
+        this.componentManager.registerComponent(WikiInitializationHistory.class);
+        this.componentManager.registerComponent(WikiAccessTracker.class);
+        this.componentManager.registerComponent(WikiInitializationExecutor.class);
+        this.componentManager.registerComponent(DefaultWikiInitializationManager.class);
+        this.componentManager.registerComponent(SubWikiInitializationRunner.class);
+
+        this.configuration = this.componentManager.getInstance(WikiInitializerConfiguration.class);
+        this.manager = this.componentManager.getInstance(WikiInitializationManager.class);
+        this.runner = this.componentManager.getInstance(SubWikiInitializationRunner.class);
+    }
+
+    /**
+     * Forget the wikis initialized by the previous invocation, since the manager initializes each wiki only once.
+     */
+    @Setup(Level.Invocation)
+    public void resetInitializedWikis()
+    {
+        for (WikiDescriptor descriptor : this.descriptors) {
+            this.manager.forget(descriptor.getId());
+        }
+    }
+
+    /**
+     * Release the threads of the executor.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.componentManager.dispose();
+    }
+
+    /**
+     * @return the summary of the initialization
+     */
+    @Benchmark
+    public WikiInitializationSummary dispatch()
+    {
+        return this.runner.run(this.descriptors, this.configuration, MONITOR);
+    }
+
+    private static ExecutionContextManager createExecutionContextManager(Execution execution)
+    {
+        // Only the initialization of the context is used by the executor, without any registered initializer.
+        return (ExecutionContextManager) Proxy.newProxyInstance(ExecutionContextManager.class.getClassLoader(),
+            new Class<?>[] { ExecutionContextManager.class }, (proxy, method, args) -> {
+                if ("initialize".equals(method.getName())) {
+                    execution.setContext((ExecutionContext) args[0]);
+                }
+                return null;
+            });
+    }
+}